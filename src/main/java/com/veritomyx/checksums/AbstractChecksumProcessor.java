@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reactive Streams processor that transforms each buffer it receives into at
+ * most one buffer it publishes, plus a final buffer on completion. Exactly
+ * one buffer is requested from upstream at a time, and only while the
+ * subscriber has outstanding demand, so memory use is bounded by the size of
+ * a buffer whatever the rates of either side.
+ */
+abstract class AbstractChecksumProcessor implements Processor<ByteBuffer, ByteBuffer> {
+
+    private final static byte[] EMPTY = new byte[0];
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+    private final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+
+    private volatile Subscription upstream;
+    private volatile Subscriber<? super ByteBuffer> downstream;
+    private volatile boolean outstanding;
+    private volatile boolean done;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+    private boolean terminated;
+
+    /**
+     * @param item Buffer received from upstream, which must not be modified
+     * @return Bytes to publish, possibly none
+     * @throws IOException if the content is not acceptable
+     */
+    protected abstract byte[] process(ByteBuffer item) throws IOException;
+
+    /**
+     * @return Final bytes to publish once upstream has completed, possibly none
+     * @throws IOException if the content is not acceptable
+     */
+    protected abstract byte[] finish() throws IOException;
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+
+        synchronized (this) {
+            if (downstream != null) {
+                subscriber.onSubscribe(new Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("only one subscriber is supported"));
+                return;
+            }
+            downstream = subscriber;
+        }
+
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("non-positive request: " + n));
+                    return;
+                }
+
+                long current;
+                do {
+                    current = requested.get();
+                } while (!requested.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                final Subscription subscription = upstream;
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+
+        upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        if (done) {
+            return;
+        }
+
+        try {
+            publish(process(item.duplicate()));
+        } catch (IOException | RuntimeException e) {
+            upstream.cancel();
+            fail(e);
+            return;
+        }
+
+        outstanding = false;
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (done) {
+            return;
+        }
+
+        try {
+            publish(finish());
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+            return;
+        }
+
+        done = true;
+        drain();
+    }
+
+    static byte[] remaining(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            return EMPTY;
+        }
+
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private void publish(byte[] bytes) {
+        if (bytes.length > 0) {
+            queue.offer(ByteBuffer.wrap(bytes));
+        }
+    }
+
+    private void fail(Throwable throwable) {
+        if (done) {
+            return;
+        }
+
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    /**
+     * Emits queued buffers and terminal signals, and requests more from
+     * upstream when needed. Only one thread runs the loop at a time; calls
+     * made while it runs cause it to go round again.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+
+        do {
+            final Subscriber<? super ByteBuffer> subscriber = downstream;
+            if (subscriber == null || terminated) {
+                continue;
+            }
+
+            if (cancelled) {
+                queue.clear();
+                continue;
+            }
+
+            final Throwable failure = error;
+            if (failure != null) {
+                terminated = true;
+                queue.clear();
+                subscriber.onError(failure);
+                continue;
+            }
+
+            while (requested.get() > 0 && !queue.isEmpty()) {
+                requested.decrementAndGet();
+                subscriber.onNext(queue.poll());
+            }
+
+            if (done && queue.isEmpty()) {
+                terminated = true;
+                subscriber.onComplete();
+            } else if (!done && queue.isEmpty() && requested.get() > 0 && !outstanding && upstream != null) {
+                outstanding = true;
+                upstream.request(1);
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+}
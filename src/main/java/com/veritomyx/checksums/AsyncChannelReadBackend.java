@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reads files with {@link AsynchronousFileChannel}, issuing a read for
+ * every requested file without waiting for earlier ones. How the reads are
+ * carried out depends on the platform: Windows uses overlapped I/O, while
+ * the JDK on Linux and macOS completes them on the given pool of threads.
+ * Opening a file blocks everywhere, so files are opened on the pool too.
+ */
+public class AsyncChannelReadBackend implements ReadBackend {
+
+    private final ExecutorService executor;
+    private final boolean shared;
+
+    /**
+     * @param threads Number of threads opening files and completing reads
+     */
+    public AsyncChannelReadBackend(int threads) {
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.shared = false;
+    }
+
+    /**
+     * @param executor Pool opening files and completing reads, shared with
+     *                 others, so it is left running when this is closed
+     */
+    public AsyncChannelReadBackend(ExecutorService executor) {
+        this.executor = executor;
+        this.shared = true;
+    }
+
+    @Override
+    public CompletableFuture<Optional<ByteBuffer>> read(Path path, int maxSize) {
+        final CompletableFuture<Optional<ByteBuffer>> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> start(path, maxSize, future));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Opens a file and issues its first read, which completes the future.
+     */
+    private void start(Path path, int maxSize, CompletableFuture<Optional<ByteBuffer>> future) {
+        final AsynchronousFileChannel channel;
+        final long size;
+        try {
+            channel = AsynchronousFileChannel.open(path, Collections.singleton(StandardOpenOption.READ), executor);
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            return;
+        }
+
+        try {
+            size = channel.size();
+        } catch (IOException e) {
+            close(channel);
+            future.completeExceptionally(e);
+            return;
+        }
+
+        if (size > maxSize) {
+            close(channel);
+            future.complete(Optional.empty());
+            return;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        channel.read(buffer, 0, buffer, new CompletionHandler<Integer, ByteBuffer>() {
+            @Override
+            public void completed(Integer count, ByteBuffer attachment) {
+                if (count != -1 && attachment.hasRemaining()) {
+                    channel.read(attachment, attachment.position(), attachment, this);
+                    return;
+                }
+
+                close(channel);
+                attachment.flip();
+                future.complete(Optional.of(attachment));
+            }
+
+            @Override
+            public void failed(Throwable e, ByteBuffer attachment) {
+                close(channel);
+                future.completeExceptionally(e);
+            }
+        });
+    }
+
+    private static void close(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing was written, so there's nothing to lose
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!shared) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads files with blocking {@link FileChannel} calls on a pool of threads,
+ * one file per thread at a time. This works the same everywhere, and on
+ * Linux it is usually as fast as {@link AsyncChannelReadBackend}.
+ */
+public class ChannelReadBackend implements ReadBackend {
+
+    private final ExecutorService executor;
+    private final boolean shared;
+
+    /**
+     * @param threads Number of files read at once
+     */
+    public ChannelReadBackend(int threads) {
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.shared = false;
+    }
+
+    /**
+     * @param executor Pool reading files, shared with others, so it is left
+     *                 running when this is closed
+     */
+    public ChannelReadBackend(ExecutorService executor) {
+        this.executor = executor;
+        this.shared = true;
+    }
+
+    @Override
+    public CompletableFuture<Optional<ByteBuffer>> read(Path path, int maxSize) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return readFully(path, maxSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    private static Optional<ByteBuffer> readFully(Path path, int maxSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > maxSize) {
+                return Optional.empty();
+            }
+
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // a file that shrinks while read is verified as it now is
+            }
+            buffer.flip();
+            return Optional.of(buffer);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!shared) {
+            executor.shutdown();
+        }
+    }
+}
@@ -31,41 +31,62 @@
 
 package com.veritomyx.checksums;
 
-import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class ChecksumInputStream extends InputStream {
 
-    private final static Logger LOGGER = LoggerFactory.getLogger(ChecksumInputStream.class);
+    private final static String ALGORITHM = "SHA-1";
+    private final static int CHUNK_SIZE = 8192;
+    private final static int PARALLEL_CHUNK_SIZE = 64 * 1024;
+    // what follows the '#' of a checksum line, and the offset of its digits
+    private final static byte[] PREFIX = " checksum".getBytes(StandardCharsets.US_ASCII);
+    private final static int HEX_OFFSET = 10;
+    private final static int HEX_SIZE = 40;
 
     private final PushbackInputStream in;
-    private final MessageDigest digest;
+    private final MultiDigest digest;
+    private final int chunkSize;
     private final byte[] buffer = new byte[51];
+    private final byte[] foundHex = new byte[HEX_SIZE];
     private boolean isClosed;
-    private Optional<String> foundChecksum = Optional.empty();
+    private boolean hasFound;
+    private Map<String, byte[]> digests = Collections.emptyMap();
 
     public ChecksumInputStream(InputStream in) throws NoSuchAlgorithmException {
-        this.in = new PushbackInputStream(in, buffer.length);
-        this.digest = MessageDigest.getInstance("SHA-1");
+        this(in, Collections.emptyList());
+    }
+
+    /**
+     * Creates a ChecksumInputStream that also calculates other digests of
+     * the content in the same pass, available from {@link #getDigests()}.
+     *
+     * @param in         Input stream with a checksum
+     * @param algorithms Additional digest algorithms, see {@link MultiDigest}
+     * @throws NoSuchAlgorithmException if SHA-1 or an additional algorithm is not found
+     */
+    public ChecksumInputStream(InputStream in, List<String> algorithms) throws NoSuchAlgorithmException {
+        // larger chunks let several digests be calculated in parallel
+        this.chunkSize = algorithms.isEmpty() ? CHUNK_SIZE : PARALLEL_CHUNK_SIZE;
+        this.in = new PushbackInputStream(in, chunkSize + buffer.length);
+        this.digest = new MultiDigest(MultiDigest.including(ALGORITHM, algorithms), !algorithms.isEmpty());
         isClosed = false;
     }
 
     /**
-     * Convenience method to return a ChecksumInputStream that wraps a
-     * BufferedInputStream around one returned from
-     * {@link java.nio.file.Files#newInputStream}.
+     * Convenience method to return a ChecksumInputStream that reads a file
+     * as {@link IoTuning} chooses for its device.
      *
      * @param path Path used for input file
      * @throws NoSuchAlgorithmException if SHA-1 is not found
@@ -73,16 +94,14 @@ public class ChecksumInputStream extends InputStream {
      * @return A new instance of a ChecksumInputStream
      */
     public static InputStream create(Path path) throws NoSuchAlgorithmException, IOException {
-        return new ChecksumInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        return new ChecksumInputStream(IoTuning.open(path));
     }
 
     @Override
     public int read() throws IOException {
         int value = in.read();
-        LOGGER.trace("Read: '{}'", (char) value);
 
         if (value == -1) {
-            LOGGER.trace("At end of stream");
             return value;
         } else if (value == '#') {
             if (hasFoundChecksum()) {
@@ -94,57 +113,122 @@ public class ChecksumInputStream extends InputStream {
         return value;
     }
 
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        int count = in.read(b, off, Math.min(len, chunkSize));
+        if (count == -1) {
+            return -1;
+        }
+
+        int end = off + count;
+        int index = off;
+        while (index < end && b[index] != '#') {
+            index++;
+        }
+
+        if (index == off && count > 0) {
+            // starts with '#'; let read() decide whether it begins the checksum
+            in.unread(b, off, count);
+            int value = read();
+            if (value == -1) {
+                return -1;
+            }
+            b[off] = (byte) value;
+            return 1;
+        }
+
+        if (index < end) {
+            in.unread(b, index, end - index);
+            count = index - off;
+        }
+
+        digest.update(b, off, count);
+        return count;
+    }
+
     @Override
     public void close() throws IOException {
         if (isClosed) {
             return;
         }
 
-        LOGGER.debug("Closing...");
         in.close();
         isClosed = true;
-        LOGGER.debug("Closed.");
 
-        String calculated = getChecksum();
-        LOGGER.debug(".. Calculated checksum: {}", calculated);
+        digests = Collections.unmodifiableMap(digest.digest());
+        final byte[] calculated = digests.get(ALGORITHM);
 
-        if (!foundChecksum.isPresent()) {
-            LOGGER.debug(".. Found checksum: none");
+        if (!hasFound) {
+            Log.LOGGER.debug("Calculated checksum: {}, found: none", Hex.encode(calculated));
             throw new MissingChecksumException();
         }
 
-        String found = foundChecksum.get();
-        LOGGER.debug(".. Found checksum: {}", found);
-
-        if (!calculated.equals(found)) {
+        // compared as bytes, so a checksum is never decoded or turned into a String
+        if (!Hex.matches(calculated, foundHex, 0)) {
+            Log.LOGGER.debug("Calculated checksum: {}, found: {}", Hex.encode(calculated), getFoundChecksum().get());
             throw new InvalidChecksumException();
         }
     }
 
     private boolean hasFoundChecksum() throws IOException {
-        LOGGER.trace("Looking for checksum");
-        int len = in.read(buffer);
+        // the underlying stream may return the trailer across several reads
+        int len = 0;
+        while (len < buffer.length) {
+            int count = in.read(buffer, len, buffer.length - len);
+            if (count == -1) {
+                break;
+            }
+            len += count;
+        }
+
         if (len < buffer.length) {
             in.unread(buffer, 0, len);
             return false;
         }
 
-        String text = new String(buffer);
-        if (!text.startsWith(" checksum")) {
-            LOGGER.trace("Unreading {}", Arrays.toString(buffer));
-            in.unread(buffer);
-            return false;
+        for (int i = 0; i < PREFIX.length; i++) {
+            if (buffer[i] != PREFIX[i]) {
+                in.unread(buffer);
+                return false;
+            }
         }
 
-        String checksum = text.substring(10, buffer.length - 1);
-        LOGGER.trace("Found checksum: '{}'", checksum);
-        foundChecksum = Optional.of(checksum);
+        System.arraycopy(buffer, HEX_OFFSET, foundHex, 0, HEX_SIZE);
+        hasFound = true;
         return true;
     }
 
-    String getChecksum() {
-        byte[] hash = digest.digest();
-        return Hex.encodeHexString(hash);
+    /**
+     * @return The checksum found in the stream so far, as written
+     */
+    public Optional<String> getFoundChecksum() {
+        if (!hasFound) {
+            return Optional.empty();
+        }
+        return Optional.of(new String(foundHex, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Returns the digests of the content, keyed by algorithm. These include
+     * SHA-1 and any additional algorithms given when created, and are only
+     * available once the stream has been closed.
+     *
+     * @return Digests of the content, or an empty map before closing
+     */
+    public Map<String, byte[]> getDigests() {
+        return digests;
+    }
+
+    /**
+     * Holds the logger so it is only initialized when a checksum fails,
+     * keeping logging setup out of the startup of successful runs.
+     */
+    private static class Log {
+        private final static Logger LOGGER = LoggerFactory.getLogger(ChecksumInputStream.class);
     }
 
 }
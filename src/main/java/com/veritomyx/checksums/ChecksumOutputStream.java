@@ -31,7 +31,6 @@
 
 package com.veritomyx.checksums;
 
-import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,31 +38,47 @@ import java.io.BufferedOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
-import java.util.Optional;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 public class ChecksumOutputStream extends FilterOutputStream {
 
     private enum State { OUT, BUFFER, CHECKSUM, FINISHED, CLOSED };
 
-    private final static Logger LOGGER = LoggerFactory.getLogger(ChecksumOutputStream.class);
+    private final static String ALGORITHM = "SHA-1";
     private final static int CHECKSUM_SIZE = 51;
     private final static byte[] CHECKSUM_BYTES = { '#', ' ', 'c', 'h', 'e', 'c', 'k', 's', 'u', 'm', ':'};
 
-    private final MessageDigest digest;
+    private final MultiDigest digest;
     private final byte[] buffer;
 
     private State state;
     private int index;
-    private Optional<String> found = Optional.empty();
+    private boolean found;
+    private boolean lineEnded;
+    private long ignored;
+    private Map<String, byte[]> digests = Collections.emptyMap();
 
     public ChecksumOutputStream(OutputStream out) throws NoSuchAlgorithmException {
+        this(out, Collections.emptyList());
+    }
+
+    /**
+     * Creates a ChecksumOutputStream that also calculates other digests of
+     * the content in the same pass, available from {@link #getDigests()}.
+     *
+     * @param out        Output stream to write content and checksum to
+     * @param algorithms Additional digest algorithms, see {@link MultiDigest}
+     * @throws NoSuchAlgorithmException if SHA-1 or an additional algorithm is not found
+     */
+    public ChecksumOutputStream(OutputStream out, List<String> algorithms) throws NoSuchAlgorithmException {
         super(out);
-        this.digest = MessageDigest.getInstance("SHA-1");
+        this.digest = new MultiDigest(MultiDigest.including(ALGORITHM, algorithms), !algorithms.isEmpty());
         this.state = State.OUT;
         this.buffer = new byte[CHECKSUM_SIZE];
         this.index = 0;
@@ -71,8 +86,8 @@ public class ChecksumOutputStream extends FilterOutputStream {
 
     /**
      * Convenience method to return a ChecksumOutputStream that wraps a
-     * BufferedOutputStream around one returned from
-     * {@link java.nio.file.Files}.
+     * BufferedOutputStream, sized by {@link IoTuning} for the device, around
+     * one returned from {@link java.nio.file.Files}.
      *
      * @param path Path used for output file
      * @return A new instance of a ChecksumInputStream
@@ -80,13 +95,15 @@ public class ChecksumOutputStream extends FilterOutputStream {
      * @throws IOException              if an I/O error occurs opening the file
      */
     public static OutputStream create(Path path) throws NoSuchAlgorithmException, IOException {
-        return new ChecksumOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        return new ChecksumOutputStream(new BufferedOutputStream(Files.newOutputStream(path),
+                IoTuning.forPath(path).getBufferSize()));
     }
 
     @Override
     public void write(int b) throws IOException {
         // ignore everything after encountering first checksum line
         if (state == State.FINISHED) {
+            ignore(new byte[] { (byte) b }, 0, 1);
             return;
         }
 
@@ -101,6 +118,60 @@ public class ChecksumOutputStream extends FilterOutputStream {
         }
     }
 
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        final int end = off + len;
+        int i = off;
+        while (i < end && state != State.FINISHED) {
+            if (state != State.OUT) {
+                write(b[i++]);
+                continue;
+            }
+
+            // pass runs without '#' straight through
+            final int start = i;
+            while (i < end && b[i] != '#') {
+                i++;
+            }
+            if (i > start) {
+                digest.update(b, start, i - start);
+                out.write(b, start, i - start);
+            }
+            if (i < end) {
+                write(b[i++]);
+            }
+        }
+
+        if (state == State.FINISHED) {
+            ignore(b, i, end - i);
+        }
+    }
+
+    /**
+     * Counts content after the checksum line, apart from its newline.
+     */
+    private void ignore(byte[] b, int off, int len) {
+        if (len > 0 && !lineEnded) {
+            lineEnded = true;
+            if (b[off] == '\n') {
+                off++;
+                len--;
+            }
+        }
+        ignored += len;
+    }
+
+    /**
+     * Returns whether content followed the first checksum line, other than
+     * the newline ending it. Such content is not written, which is right for
+     * a stream but loses data when a file is rewritten with a checksum.
+     *
+     * @return Whether any content was left out
+     */
+    public boolean hasIgnoredContent() {
+        return ignored > 0;
+    }
+
     @Override
     public void close() throws IOException {
         if (state == State.CLOSED) {
@@ -109,23 +180,27 @@ public class ChecksumOutputStream extends FilterOutputStream {
             digest.update(buffer, 0, index);
             out.write(buffer, 0, index);
         } else if (state == State.CHECKSUM) {
-            LOGGER.error("Partial checksum line detected: {}", new String(Arrays.copyOf(buffer, index)));
+            Log.LOGGER.debug("Partial checksum line detected: {}", new String(buffer, 0, index, StandardCharsets.US_ASCII));
             flushAndClose();
             throw new InvalidChecksumException();
         }
 
-        final String checksum = "# checksum:" + Hex.encodeHexString(digest.digest());
+        digests = Collections.unmodifiableMap(digest.digest());
+        final byte[] calculated = digests.get(ALGORITHM);
 
-        if (found.isPresent()) {
-            if (!checksum.equals(found.get())) {
-                LOGGER.error("Calculated: {}, Found: {}", checksum.substring(11), found.get().substring(11));
-                flushAndClose();
-                throw new InvalidChecksumException();
-            }
+        if (found && !Hex.matches(calculated, buffer, CHECKSUM_BYTES.length)) {
+            Log.LOGGER.debug("Calculated: {}, Found: {}", Hex.encode(calculated),
+                    new String(buffer, CHECKSUM_BYTES.length, CHECKSUM_SIZE - CHECKSUM_BYTES.length, StandardCharsets.US_ASCII));
+            flushAndClose();
+            throw new InvalidChecksumException();
         }
 
-        out.write(checksum.getBytes());
-        out.write('\n');
+        // the line is assembled as US-ASCII bytes, whatever the platform charset
+        final byte[] line = new byte[CHECKSUM_SIZE + 1];
+        System.arraycopy(CHECKSUM_BYTES, 0, line, 0, CHECKSUM_BYTES.length);
+        Hex.encode(calculated, line, CHECKSUM_BYTES.length);
+        line[CHECKSUM_SIZE] = '\n';
+        out.write(line);
         flushAndClose();
     }
 
@@ -162,10 +237,21 @@ public class ChecksumOutputStream extends FilterOutputStream {
             return;
         }
 
-        final String line = new String(buffer);
+        // the line stays in the buffer, which is no longer written to
         state = State.FINISHED;
-        found = Optional.of(line);
+        found = true;
+
+    }
 
+    /**
+     * Returns the digests of the content, keyed by algorithm. These include
+     * SHA-1 and any additional algorithms given when created, and are only
+     * available once the stream has been closed.
+     *
+     * @return Digests of the content, or an empty map before closing
+     */
+    public Map<String, byte[]> getDigests() {
+        return digests;
     }
 
     private void flushAndClose() throws IOException {
@@ -173,5 +259,13 @@ public class ChecksumOutputStream extends FilterOutputStream {
         out.close();
         state = State.CLOSED;
     }
+
+    /**
+     * Holds the logger so it is only initialized when a checksum fails,
+     * keeping logging setup out of the startup of successful runs.
+     */
+    private static class Log {
+        private final static Logger LOGGER = LoggerFactory.getLogger(ChecksumOutputStream.class);
+    }
 }
 
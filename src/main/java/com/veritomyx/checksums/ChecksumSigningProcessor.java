@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Reactive Streams processor that passes content through and appends a
+ * checksum line on completion, like {@link ChecksumOutputStream}. Content
+ * that already ends with a valid checksum keeps exactly one; an invalid one
+ * is signalled as an {@link InvalidChecksumException}.
+ */
+public class ChecksumSigningProcessor extends AbstractChecksumProcessor {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final ChecksumOutputStream stream;
+
+    public ChecksumSigningProcessor() throws NoSuchAlgorithmException {
+        this.stream = new ChecksumOutputStream(bytes);
+    }
+
+    @Override
+    protected byte[] process(ByteBuffer item) throws IOException {
+        if (item.hasArray()) {
+            stream.write(item.array(), item.arrayOffset() + item.position(), item.remaining());
+        } else {
+            stream.write(remaining(item));
+        }
+        return collect();
+    }
+
+    @Override
+    protected byte[] finish() throws IOException {
+        stream.close();
+        return collect();
+    }
+
+    private byte[] collect() {
+        final byte[] collected = bytes.toByteArray();
+        bytes.reset();
+        return collected;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Output stream that calculates a checksum once, like
+ * {@link ChecksumOutputStream}, and writes the content and trailer to
+ * several output streams. Each output is written by its own thread through a
+ * bounded queue, so a slow output only holds back the writer once its queue
+ * is full. An output that fails doesn't hold back the others, and its
+ * failure is thrown by the next write or by closing. Closing waits until
+ * every output has been written and closed, even after a failure.
+ */
+public class ChecksumTeeOutputStream extends FilterOutputStream {
+
+    private final static int CHUNK_SIZE = 8192;
+    private final static int DEFAULT_QUEUE_CAPACITY = 16;
+
+    private final FanOutOutputStream fanOut;
+
+    public ChecksumTeeOutputStream(OutputStream... outs) throws NoSuchAlgorithmException {
+        this(Arrays.asList(outs), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param outs          Outputs that all receive the same bytes
+     * @param queueCapacity Number of chunks of up to 8 KiB buffered per output
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     */
+    public ChecksumTeeOutputStream(List<OutputStream> outs, int queueCapacity) throws NoSuchAlgorithmException {
+        this(new FanOutOutputStream(outs, queueCapacity));
+    }
+
+    private ChecksumTeeOutputStream(FanOutOutputStream fanOut) throws NoSuchAlgorithmException {
+        super(new ChecksumOutputStream(fanOut));
+        this.fanOut = fanOut;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            // the checksum stream doesn't get to close the outputs when writing its trailer fails
+            fanOut.close();
+        }
+    }
+
+    /**
+     * Collects bytes into chunks and hands each chunk to every sink.
+     */
+    private static class FanOutOutputStream extends OutputStream {
+
+        private final List<Sink> sinks = new ArrayList<>();
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private int count;
+        private boolean closed;
+
+        FanOutOutputStream(List<OutputStream> outs, int queueCapacity) {
+            int number = 0;
+            for (OutputStream out : outs) {
+                final Sink sink = new Sink(out, queueCapacity);
+                final Thread thread = new Thread(sink, "checksum-tee-" + number++);
+                thread.setDaemon(true);
+                sink.thread = thread;
+                sinks.add(sink);
+                thread.start();
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            chunk[count++] = (byte) b;
+            if (count == chunk.length) {
+                dispatch();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                final int n = Math.min(len, chunk.length - count);
+                System.arraycopy(b, off, chunk, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == chunk.length) {
+                    dispatch();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            dispatch();
+            enqueue(Sink.FLUSH);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            try {
+                dispatch();
+            } finally {
+                end();
+            }
+            checkFailures();
+        }
+
+        /**
+         * Ends every sink, failed or not, and waits for each to close its
+         * output, so no thread is left waiting on its queue.
+         */
+        private void end() throws InterruptedIOException {
+            try {
+                for (Sink sink : sinks) {
+                    sink.queue.put(Sink.END);
+                }
+                for (Sink sink : sinks) {
+                    sink.thread.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for outputs");
+            }
+        }
+
+        private void dispatch() throws IOException {
+            if (count == 0) {
+                return;
+            }
+
+            // the same copy is shared by all sinks, which only read it
+            enqueue(Arrays.copyOf(chunk, count));
+            count = 0;
+        }
+
+        /**
+         * Hands an item to every sink before reporting any failure, so the
+         * healthy ones get all that was written before it was noticed.
+         */
+        private void enqueue(byte[] item) throws IOException {
+            for (Sink sink : sinks) {
+                try {
+                    sink.queue.put(item);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted writing to outputs");
+                }
+            }
+            checkFailures();
+        }
+
+        private void checkFailures() throws IOException {
+            for (Sink sink : sinks) {
+                if (sink.failure != null) {
+                    // a new exception each time, since closing may report the failure a write already did
+                    throw new IOException(sink.failure.getMessage(), sink.failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes queued chunks to one output until the end marker. After a
+     * failure, whatever the output threw, it keeps draining its queue so the
+     * writer is never blocked, and the failure is reported on the next write.
+     */
+    private static class Sink implements Runnable {
+
+        private final static byte[] FLUSH = new byte[0];
+        private final static byte[] END = new byte[0];
+
+        private final OutputStream out;
+        private final BlockingQueue<byte[]> queue;
+        private Thread thread;
+        private volatile IOException failure;
+
+        Sink(OutputStream out, int queueCapacity) {
+            this.out = out;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        @Override
+        public void run() {
+            try {
+                byte[] item;
+                while ((item = queue.take()) != END) {
+                    if (failure != null) {
+                        continue;
+                    }
+
+                    try {
+                        if (item == FLUSH) {
+                            out.flush();
+                        } else {
+                            out.write(item);
+                        }
+                    } catch (Throwable e) {
+                        failure = asIOException(e);
+                    }
+                }
+
+                out.close();
+            } catch (IOException | RuntimeException e) {
+                if (failure == null) {
+                    failure = asIOException(e);
+                }
+            } catch (InterruptedException e) {
+                failure = new InterruptedIOException("interrupted writing output");
+            }
+        }
+
+        private static IOException asIOException(Throwable e) {
+            return e instanceof IOException ? (IOException) e : new IOException("output failed", e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * The checksum line at the end of a file, read without hashing the content.
+ *
+ * <p>Only the final {@value #SIZE} bytes are examined, which must be exactly
+ * "# checksum:", 40 hexadecimal digits and a newline, as written by
+ * {@link ChecksumOutputStream}. A checksum line followed by other content is
+ * accepted by {@link ChecksumInputStream} but is not found here.</p>
+ */
+public final class ChecksumTrailer {
+
+    public final static int SIZE = 52;
+    private final static String ALGORITHM = "SHA-1";
+    private final static byte[] PREFIX = "# checksum:".getBytes(StandardCharsets.US_ASCII);
+
+    private final String hex;
+    private final byte[] digest;
+
+    private ChecksumTrailer(String hex, byte[] digest) {
+        this.hex = hex;
+        this.digest = digest;
+    }
+
+    /**
+     * Reads the checksum line of a file with a single positional read.
+     *
+     * @param path File to read
+     * @return The checksum line, or empty if the file doesn't end with one
+     * @throws IOException if an I/O error occurs
+     */
+    public static Optional<ChecksumTrailer> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < SIZE) {
+                return Optional.empty();
+            }
+
+            final ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, size - SIZE + buffer.position()) == -1) {
+                    return Optional.empty();
+                }
+            }
+            return parse(buffer.array(), 0);
+        }
+    }
+
+    /**
+     * Parses a checksum line.
+     *
+     * @param bytes  Bytes containing the line
+     * @param offset Offset of the line, which must be followed by at least {@value #SIZE} bytes
+     * @return The checksum line, or empty if the bytes are not one
+     */
+    public static Optional<ChecksumTrailer> parse(byte[] bytes, int offset) {
+        for (int i = 0; i < PREFIX.length; i++) {
+            if (bytes[offset + i] != PREFIX[i]) {
+                return Optional.empty();
+            }
+        }
+        if (bytes[offset + SIZE - 1] != '\n') {
+            return Optional.empty();
+        }
+
+        final String hex = new String(bytes, offset + PREFIX.length, SIZE - PREFIX.length - 1, StandardCharsets.US_ASCII);
+        try {
+            return Optional.of(new ChecksumTrailer(hex, Hex.decode(hex)));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    public String getAlgorithm() {
+        return ALGORITHM;
+    }
+
+    /**
+     * @return The digest as written, which verifies only if in lowercase
+     */
+    public String getHex() {
+        return hex;
+    }
+
+    public byte[] getDigest() {
+        return digest.clone();
+    }
+}
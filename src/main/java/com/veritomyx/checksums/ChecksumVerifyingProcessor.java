@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Reactive Streams processor that passes content through without its
+ * checksum line, like {@link ChecksumInputStream}. On completion a missing
+ * or invalid checksum is signalled as a {@link MissingChecksumException} or
+ * {@link InvalidChecksumException} instead of completing.
+ *
+ * <p>Unlike the input stream, which reads ahead when it meets a '#', this
+ * holds back the bytes after a '#' until enough have arrived to tell whether
+ * they are the checksum line, so it never blocks.</p>
+ */
+public class ChecksumVerifyingProcessor extends AbstractChecksumProcessor {
+
+    // '#' followed by the 51 bytes ChecksumInputStream examines
+    private final static int LINE_SIZE = 52;
+    private final static byte[] PREFIX = " checksum".getBytes(StandardCharsets.US_ASCII);
+
+    private final MultiDigest digest;
+    private final byte[] line = new byte[LINE_SIZE];
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    private int length;
+    private boolean found;
+
+    public ChecksumVerifyingProcessor() throws NoSuchAlgorithmException {
+        this.digest = new MultiDigest("SHA-1");
+    }
+
+    @Override
+    protected byte[] process(ByteBuffer item) {
+        final byte[] bytes = remaining(item);
+        scan(bytes, 0, bytes.length);
+        return collect();
+    }
+
+    @Override
+    protected byte[] finish() throws IOException {
+        // too short to be a checksum line, so it's content
+        if (!found) {
+            emit(line, 0, length);
+            length = 0;
+        }
+
+        final byte[] remaining = collect();
+        final byte[] calculated = digest.digest().get("SHA-1");
+        if (!found) {
+            throw new MissingChecksumException();
+        } else if (!Hex.matches(calculated, line, 11)) {
+            throw new InvalidChecksumException();
+        }
+        return remaining;
+    }
+
+    private void scan(byte[] bytes, int off, int len) {
+        final int end = off + len;
+        int i = off;
+        while (i < end && !found) {
+            if (length == 0) {
+                final int start = i;
+                while (i < end && bytes[i] != '#') {
+                    i++;
+                }
+                emit(bytes, start, i - start);
+                if (i < end) {
+                    line[length++] = bytes[i++];
+                }
+                continue;
+            }
+
+            final int n = Math.min(end - i, LINE_SIZE - length);
+            System.arraycopy(bytes, i, line, length, n);
+            length += n;
+            i += n;
+            if (length < LINE_SIZE) {
+                continue;
+            }
+
+            if (startsWithPrefix()) {
+                // the line is kept as is, to be compared once the digest is known
+                found = true;
+                return;
+            }
+
+            // not the checksum line: the '#' is content, and the rest is scanned again
+            emit(line, 0, 1);
+            final byte[] rest = new byte[LINE_SIZE - 1];
+            System.arraycopy(line, 1, rest, 0, rest.length);
+            length = 0;
+            scan(rest, 0, rest.length);
+        }
+    }
+
+    private boolean startsWithPrefix() {
+        for (int i = 0; i < PREFIX.length; i++) {
+            if (line[1 + i] != PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void emit(byte[] bytes, int off, int len) {
+        digest.update(bytes, off, len);
+        content.write(bytes, off, len);
+    }
+
+    private byte[] collect() {
+        final byte[] collected = content.toByteArray();
+        content.reset();
+        return collected;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+/**
+ * Splits content written to it into variable-sized chunks at positions
+ * determined by the content itself, so that sections shared between files
+ * produce the same chunks wherever they occur, and reports the SHA-1 digest
+ * of each chunk.
+ *
+ * <p>Boundaries are found with a FastCDC-style gear hash and normalized
+ * chunking: a stricter mask below the average size and a looser one above
+ * it keep most chunks close to the average. Chunks are never smaller than
+ * the minimum, except the last, nor larger than the maximum. The gear table
+ * is generated from a fixed seed, so boundaries are stable between runs.</p>
+ */
+public class ContentChunker extends OutputStream {
+
+    public interface Listener {
+        /**
+         * @param offset Offset of the chunk in the content
+         * @param length Length of the chunk
+         * @param digest SHA-1 digest of the chunk
+         */
+        void chunk(long offset, int length, byte[] digest);
+    }
+
+    public final static int DEFAULT_MIN_SIZE = 2 * 1024;
+    public final static int DEFAULT_AVERAGE_SIZE = 8 * 1024;
+    public final static int DEFAULT_MAX_SIZE = 64 * 1024;
+
+    private final static long[] GEAR = new long[256];
+
+    static {
+        final Random random = new Random(0x5eed);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minSize;
+    private final int averageSize;
+    private final int maxSize;
+    private final long strictMask;
+    private final long looseMask;
+    private final Listener listener;
+    private final MessageDigest digest;
+
+    private long hash;
+    private int size;
+    private long offset;
+    private boolean closed;
+
+    public ContentChunker(Listener listener) throws NoSuchAlgorithmException {
+        this(DEFAULT_MIN_SIZE, DEFAULT_AVERAGE_SIZE, DEFAULT_MAX_SIZE, listener);
+    }
+
+    /**
+     * @param minSize     Minimum chunk size
+     * @param averageSize Target average chunk size, a power of two
+     * @param maxSize     Maximum chunk size
+     * @param listener    Receives each chunk as its end is found
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     */
+    public ContentChunker(int minSize, int averageSize, int maxSize, Listener listener)
+            throws NoSuchAlgorithmException {
+
+        if (Integer.bitCount(averageSize) != 1 || minSize > averageSize || averageSize > maxSize) {
+            throw new IllegalArgumentException("sizes must be min <= average <= max, with average a power of two");
+        }
+
+        final int bits = Integer.numberOfTrailingZeros(averageSize);
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+        this.strictMask = highBits(bits + 2);
+        this.looseMask = highBits(bits - 2);
+        this.listener = listener;
+        this.digest = MessageDigest.getInstance("SHA-1");
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        final int end = off + len;
+        int start = off;
+        for (int i = off; i < end; i++) {
+            size++;
+            if (size <= minSize) {
+                continue;
+            }
+
+            hash = (hash << 1) + GEAR[b[i] & 0xFF];
+            final long mask = size < averageSize ? strictMask : looseMask;
+            if ((hash & mask) == 0 || size >= maxSize) {
+                digest.update(b, start, i + 1 - start);
+                emit();
+                start = i + 1;
+            }
+        }
+        digest.update(b, start, end - start);
+    }
+
+    /**
+     * Reports the final chunk, if there is one.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        if (size > 0) {
+            emit();
+        }
+    }
+
+    private void emit() {
+        listener.chunk(offset, size, digest.digest());
+        offset += size;
+        size = 0;
+        hash = 0;
+    }
+
+    private static long highBits(int count) {
+        return count <= 0 ? 0 : -1L << (64 - count);
+    }
+}
@@ -0,0 +1,712 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persistent index of the content-defined chunks of files, for measuring how
+ * much content is shared between them.
+ *
+ * <p>The index is a directory holding two memory-mapped, open-addressing hash
+ * tables and a file of chunk lists. One table maps chunk digest to chunk
+ * length and the number of distinct files containing it, however many
+ * times each does. The other maps file name
+ * to the digest of the content last recorded for it and the position of the
+ * list of its chunk digests. Recording a file whose content hasn't changed
+ * since it was last recorded has no effect, so files can be recorded every
+ * time they are verified. When a file's content does change, its old chunks
+ * are released before the new ones are added, and chunks no file contains
+ * any more are removed. Tables double in size when half full, up to the
+ * 2 GiB limit of a single mapping. The space of replaced lists is reclaimed
+ * once it exceeds that of the lists in use, by writing a new list file and
+ * then switching the file table over to it.</p>
+ *
+ * <p>An index can be open once at a time for recording, or by any number of
+ * processes for reading while it isn't being recorded to.</p>
+ */
+public class DedupIndex implements Closeable {
+
+    private final static int DIGEST_SIZE = 20;
+
+    // file table values: content digest, then offset and number of entries of its chunk list
+    private final static int FILE_VALUE_SIZE = DIGEST_SIZE + 8 + 4;
+
+    // chunk statistics kept in the header of the chunk table
+    private final static int REFERENCES = 0;
+    private final static int LOGICAL_BYTES = 1;
+    private final static int UNIQUE_BYTES = 2;
+
+    // chunk list statistics kept in the header of the file table
+    private final static int GENERATION = 0;
+    private final static int LIVE_LIST_BYTES = 1;
+    private final static int FREE_LIST_BYTES = 2;
+
+    // replaced lists smaller than this are never worth reclaiming
+    private final static long MIN_FREE_LIST_BYTES = 64 * 1024;
+    private final static int LIST_BLOCK_SIZE = 4096 * DIGEST_SIZE;
+
+    private final Path directory;
+    private final boolean readOnly;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final Table chunks;
+    private final Table files;
+    private FileChannel lists;
+
+    private DedupIndex(Path directory, boolean readOnly) throws IOException {
+        this.directory = directory;
+        this.readOnly = readOnly;
+        if (readOnly) {
+            if (!Files.isDirectory(directory)) {
+                throw new NoSuchFileException(directory.toString(), null, "no dedup index");
+            }
+            lockChannel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.READ);
+        } else {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+        }
+
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock(0, Long.MAX_VALUE, readOnly);
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+
+        lock = acquired;
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("dedup index already in use: " + directory);
+        }
+
+        try {
+            chunks = new Table(directory.resolve("chunks.idx"), 8, readOnly);
+            files = new Table(directory.resolve("files.idx"), FILE_VALUE_SIZE, readOnly);
+            lists = openLists(files.stat(GENERATION));
+            if (!readOnly) {
+                deleteStaleFiles();
+            }
+        } catch (IOException | RuntimeException e) {
+            // closing the channel releases the lock
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an index for recording, creating it if it doesn't exist.
+     *
+     * @param directory Directory of the index
+     * @return The open index
+     * @throws IOException if an I/O error occurs, or the index is already open
+     */
+    public static DedupIndex open(Path directory) throws IOException {
+        return new DedupIndex(directory, false);
+    }
+
+    /**
+     * Opens an existing index for reading only.
+     *
+     * @param directory Directory of the index
+     * @return The open index
+     * @throws NoSuchFileException if there is no index in the directory
+     * @throws IOException         if an I/O error occurs, or the index is open for recording
+     */
+    public static DedupIndex openReadOnly(Path directory) throws IOException {
+        return new DedupIndex(directory, true);
+    }
+
+    /**
+     * Creates a listener that collects the chunks of one file, to be added
+     * to the index with {@link Recorder#commit} once the file has been read.
+     *
+     * @param name Name identifying the file, such as its absolute path
+     * @return A new recorder
+     */
+    public Recorder recorder(String name) {
+        return new Recorder(name);
+    }
+
+    public synchronized long getFileCount() {
+        return files.size();
+    }
+
+    public synchronized long getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * @return Sum over files of the number of chunks they contain
+     */
+    public synchronized long getReferenceCount() {
+        return chunks.stat(REFERENCES);
+    }
+
+    /**
+     * @return Sum over files of their recorded sizes
+     */
+    public synchronized long getLogicalBytes() {
+        return chunks.stat(LOGICAL_BYTES);
+    }
+
+    /**
+     * @return Size of all distinct chunks, which is what storing each only once would take
+     */
+    public synchronized long getUniqueBytes() {
+        return chunks.stat(UNIQUE_BYTES);
+    }
+
+    public interface ChunkVisitor {
+        /**
+         * @param digest Digest of the chunk
+         * @param length Length of the chunk
+         * @param files  Number of distinct files containing the chunk
+         */
+        void visit(byte[] digest, int length, int files);
+    }
+
+    public synchronized void forEachChunk(ChunkVisitor visitor) {
+        final byte[] key = new byte[DIGEST_SIZE];
+        final ByteBuffer value = ByteBuffer.allocate(8);
+        for (int slot = 0; slot < chunks.capacity; slot++) {
+            if (chunks.read(slot, key, value.array())) {
+                visitor.visit(key.clone(), value.getInt(0), value.getInt(4));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            chunks.close();
+            files.close();
+            lists.close();
+        } finally {
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    private synchronized void commit(String name, byte[] contentDigest, List<Integer> lengths,
+                                     List<byte[]> digests) throws IOException {
+        if (readOnly) {
+            throw new IOException("dedup index opened read-only: " + directory);
+        }
+
+        final byte[] fileKey = nameKey(name);
+        final ByteBuffer entry = ByteBuffer.allocate(FILE_VALUE_SIZE);
+        if (files.get(fileKey, entry.array())) {
+            if (Arrays.equals(Arrays.copyOf(entry.array(), DIGEST_SIZE), contentDigest)) {
+                return;
+            }
+            release(entry.getLong(DIGEST_SIZE), entry.getInt(DIGEST_SIZE + 8));
+        }
+
+        entry.clear();
+        entry.put(contentDigest).putLong(append(digests)).putInt(digests.size());
+        files.put(fileKey, entry.array());
+
+        final ByteBuffer value = ByteBuffer.allocate(8);
+        final Set<ByteBuffer> seen = new HashSet<>();
+        for (int i = 0; i < lengths.size(); i++) {
+            final int length = lengths.get(i);
+            final byte[] digest = digests.get(i);
+            chunks.addStat(REFERENCES, 1);
+            chunks.addStat(LOGICAL_BYTES, length);
+            // a chunk repeated within the file counts the file once
+            if (!seen.add(ByteBuffer.wrap(digest))) {
+                continue;
+            }
+
+            int files = 0;
+            if (chunks.get(digest, value.array())) {
+                files = value.getInt(4);
+            } else {
+                chunks.addStat(UNIQUE_BYTES, length);
+            }
+            value.putInt(0, length).putInt(4, files + 1);
+            chunks.put(digest, value.array());
+        }
+
+        final long free = files.stat(FREE_LIST_BYTES);
+        if (free >= MIN_FREE_LIST_BYTES && free > files.stat(LIVE_LIST_BYTES)) {
+            compact();
+        }
+    }
+
+    /**
+     * Takes the references in a list away, taking the file away from each
+     * distinct chunk in it and removing chunks no file contains any more,
+     * and marks the list as free.
+     */
+    private void release(long offset, int count) throws IOException {
+        final ByteBuffer block = ByteBuffer.allocate(LIST_BLOCK_SIZE);
+        final ByteBuffer value = ByteBuffer.allocate(8);
+        final Map<ByteBuffer, Integer> seen = new HashMap<>();
+        final long end = offset + (long) count * DIGEST_SIZE;
+        long position = offset;
+        while (position < end) {
+            block.clear();
+            block.limit((int) Math.min(block.capacity(), end - position));
+            readFully(lists, block, position);
+            position += block.limit();
+
+            block.flip();
+            while (block.hasRemaining()) {
+                final byte[] digest = new byte[DIGEST_SIZE];
+                block.get(digest);
+                // a chunk repeated within the file takes the file away once, and may be gone by its repeats
+                Integer length = seen.get(ByteBuffer.wrap(digest));
+                if (length == null) {
+                    if (!chunks.get(digest, value.array())) {
+                        throw new IOException("dedup index inconsistent: " + directory);
+                    }
+
+                    length = value.getInt(0);
+                    seen.put(ByteBuffer.wrap(digest), length);
+                    final int files = value.getInt(4);
+                    if (files > 1) {
+                        value.putInt(4, files - 1);
+                        chunks.put(digest, value.array());
+                    } else {
+                        chunks.remove(digest);
+                        chunks.addStat(UNIQUE_BYTES, -length);
+                    }
+                }
+                chunks.addStat(REFERENCES, -1);
+                chunks.addStat(LOGICAL_BYTES, -length);
+            }
+        }
+
+        files.addStat(LIVE_LIST_BYTES, offset - end);
+        files.addStat(FREE_LIST_BYTES, end - offset);
+    }
+
+    /**
+     * Appends a list of chunk digests to the list file.
+     *
+     * @return Offset of the list
+     */
+    private long append(List<byte[]> digests) throws IOException {
+        final long offset = lists.size();
+        final ByteBuffer block = ByteBuffer.allocate(LIST_BLOCK_SIZE);
+        long position = offset;
+        for (byte[] digest : digests) {
+            if (!block.hasRemaining()) {
+                block.flip();
+                position += writeFully(lists, block, position);
+                block.clear();
+            }
+            block.put(digest);
+        }
+        block.flip();
+        writeFully(lists, block, position);
+
+        files.addStat(LIVE_LIST_BYTES, (long) digests.size() * DIGEST_SIZE);
+        return offset;
+    }
+
+    /**
+     * Copies the lists in use to a new list file and writes a file table
+     * pointing into it. Moving that table into place switches over to the
+     * new list file, so an interruption leaves either the old or the new
+     * pair in use; the other is deleted when the index is next opened.
+     */
+    private void compact() throws IOException {
+        final long generation = files.stat(GENERATION) + 1;
+        final Path temp = directory.resolve("files.idx.compact");
+        Files.deleteIfExists(temp);
+
+        final Table table = new Table(temp, FILE_VALUE_SIZE, files.capacity, false);
+        long position = 0;
+        try (FileChannel compacted = FileChannel.open(listsPath(generation), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            final byte[] key = new byte[DIGEST_SIZE];
+            final ByteBuffer value = ByteBuffer.allocate(FILE_VALUE_SIZE);
+            for (int slot = 0; slot < files.capacity; slot++) {
+                if (files.read(slot, key, value.array())) {
+                    final long length = (long) value.getInt(DIGEST_SIZE + 8) * DIGEST_SIZE;
+                    long copied = 0;
+                    compacted.position(position);
+                    while (copied < length) {
+                        copied += lists.transferTo(value.getLong(DIGEST_SIZE) + copied, length - copied, compacted);
+                    }
+                    value.putLong(DIGEST_SIZE, position);
+                    table.put(key, value.array());
+                    position += length;
+                }
+            }
+            compacted.force(true);
+        }
+
+        table.addStat(GENERATION, generation);
+        table.addStat(LIVE_LIST_BYTES, position);
+        files.replaceWith(table);
+
+        lists.close();
+        lists = openLists(generation);
+        Files.deleteIfExists(listsPath(generation - 1));
+    }
+
+    private FileChannel openLists(long generation) throws IOException {
+        final OpenOption[] options = readOnly
+                ? new OpenOption[] { StandardOpenOption.READ }
+                : new OpenOption[] { StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE };
+        return FileChannel.open(listsPath(generation), options);
+    }
+
+    private Path listsPath(long generation) {
+        return directory.resolve("lists-" + generation + ".dat");
+    }
+
+    /**
+     * Deletes list files and tables left behind by an interrupted compaction
+     * or growth.
+     */
+    private void deleteStaleFiles() throws IOException {
+        final Path current = listsPath(files.stat(GENERATION));
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, "{lists-*.dat,*.compact,*.grow}")) {
+            for (Path file : stale) {
+                if (!file.equals(current)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new IOException("dedup index list file truncated");
+            }
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        final int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + length - buffer.remaining());
+        }
+        return length;
+    }
+
+    private static byte[] nameKey(String name) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(name.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Collects the chunks of one file. Chunks of the same content within a
+     * file are counted once per occurrence in the totals, but add the file
+     * to the chunk's count of files only once.
+     */
+    public class Recorder implements ContentChunker.Listener {
+
+        private final String name;
+        private final List<Integer> lengths = new ArrayList<>();
+        private final List<byte[]> digests = new ArrayList<>();
+
+        private Recorder(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void chunk(long offset, int length, byte[] digest) {
+            lengths.add(length);
+            digests.add(digest);
+        }
+
+        /**
+         * Adds the collected chunks to the index in place of those last
+         * recorded for the file, unless it was last recorded with the same
+         * content.
+         *
+         * @param contentDigest Digest of the whole content of the file
+         * @throws IOException if an I/O error occurs growing the index, or it was opened read-only
+         */
+        public void commit(byte[] contentDigest) throws IOException {
+            DedupIndex.this.commit(name, contentDigest, lengths, digests);
+        }
+    }
+
+    /**
+     * Memory-mapped hash table with 20-byte digest keys and fixed-size
+     * values, using linear probing. An all-zero key marks an empty slot.
+     */
+    private static class Table implements Closeable {
+
+        private final static int MAGIC = 0x43444458;
+        private final static int HEADER_SIZE = 64;
+        private final static int INITIAL_CAPACITY = 1 << 12;
+        private final static int STATS = 3;
+
+        private final Path path;
+        private final int valueSize;
+        private final int entrySize;
+        private final boolean readOnly;
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+        private int capacity;
+
+        Table(Path path, int valueSize, boolean readOnly) throws IOException {
+            this(path, valueSize, INITIAL_CAPACITY, readOnly);
+        }
+
+        Table(Path path, int valueSize, int initialCapacity, boolean readOnly) throws IOException {
+            this.path = path;
+            this.valueSize = valueSize;
+            this.entrySize = DIGEST_SIZE + valueSize;
+            this.readOnly = readOnly;
+            map(path, initialCapacity);
+        }
+
+        private void map(Path file, int initialCapacity) throws IOException {
+            if (readOnly) {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } else {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+                if (channel.size() == 0) {
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                            HEADER_SIZE + (long) initialCapacity * entrySize);
+                    buffer.putInt(0, MAGIC).putInt(4, valueSize).putInt(8, initialCapacity);
+                } else {
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                }
+            }
+
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != valueSize) {
+                channel.close();
+                throw new IOException("not a dedup index table: " + file);
+            }
+            capacity = buffer.getInt(8);
+        }
+
+        long size() {
+            return buffer.getLong(16);
+        }
+
+        long stat(int index) {
+            return buffer.getLong(24 + 8 * index);
+        }
+
+        void addStat(int index, long delta) {
+            buffer.putLong(24 + 8 * index, stat(index) + delta);
+        }
+
+        boolean get(byte[] key, byte[] value) {
+            final int slot = find(key);
+            if (isEmpty(slot)) {
+                return false;
+            }
+            read(slot, new byte[DIGEST_SIZE], value);
+            return true;
+        }
+
+        void put(byte[] key, byte[] value) throws IOException {
+            int slot = find(key);
+            if (isEmpty(slot)) {
+                if (2 * (size() + 1) > capacity) {
+                    grow();
+                    slot = find(key);
+                }
+                buffer.putLong(16, size() + 1);
+            }
+
+            final ByteBuffer entry = buffer.duplicate();
+            entry.position(offset(slot));
+            entry.put(nonZero(key)).put(value, 0, valueSize);
+        }
+
+        /**
+         * Removes a key, moving back any later entries of its probe run that
+         * would otherwise no longer be found.
+         */
+        void remove(byte[] key) {
+            int hole = find(key);
+            if (isEmpty(hole)) {
+                return;
+            }
+
+            final int mask = capacity - 1;
+            int next = (hole + 1) & mask;
+            while (!isEmpty(next)) {
+                final int home = buffer.getInt(offset(next)) & mask;
+                // the entry can fill the hole unless its home slot lies after the hole
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    for (int i = 0; i < entrySize; i++) {
+                        buffer.put(offset(hole) + i, buffer.get(offset(next) + i));
+                    }
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+
+            for (int i = 0; i < entrySize; i++) {
+                buffer.put(offset(hole) + i, (byte) 0);
+            }
+            buffer.putLong(16, size() - 1);
+        }
+
+        boolean read(int slot, byte[] key, byte[] value) {
+            if (isEmpty(slot)) {
+                return false;
+            }
+            final ByteBuffer entry = buffer.duplicate();
+            entry.position(offset(slot));
+            entry.get(key).get(value, 0, valueSize);
+            return true;
+        }
+
+        private int find(byte[] key) {
+            final byte[] stored = nonZero(key);
+            int slot = ByteBuffer.wrap(stored).getInt() & (capacity - 1);
+            while (!isEmpty(slot) && !keyEquals(slot, stored)) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            return slot;
+        }
+
+        private boolean keyEquals(int slot, byte[] key) {
+            final int offset = offset(slot);
+            for (int i = 0; i < DIGEST_SIZE; i++) {
+                if (buffer.get(offset + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isEmpty(int slot) {
+            final int offset = offset(slot);
+            for (int i = 0; i < DIGEST_SIZE; i += 4) {
+                if (buffer.getInt(offset + i) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int offset(int slot) {
+            return HEADER_SIZE + slot * entrySize;
+        }
+
+        /**
+         * Rehashes into a table of twice the capacity, written alongside and
+         * then moved over this one.
+         */
+        private void grow() throws IOException {
+            if ((long) capacity * 2 * entrySize + HEADER_SIZE > Integer.MAX_VALUE) {
+                throw new IOException("dedup index table full: " + path);
+            }
+
+            final Path temp = path.resolveSibling(path.getFileName() + ".grow");
+            Files.deleteIfExists(temp);
+            final Table grown = new Table(temp, valueSize, capacity * 2, false);
+            final byte[] key = new byte[DIGEST_SIZE];
+            final byte[] value = new byte[valueSize];
+            for (int slot = 0; slot < capacity; slot++) {
+                if (read(slot, key, value)) {
+                    grown.put(key, value);
+                }
+            }
+            for (int i = 0; i < STATS; i++) {
+                grown.addStat(i, stat(i));
+            }
+            replaceWith(grown);
+        }
+
+        /**
+         * Moves another table, written alongside, over this one.
+         */
+        void replaceWith(Table replacement) throws IOException {
+            replacement.close();
+            close();
+
+            Files.move(replacement.path, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            map(path, replacement.capacity);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!readOnly) {
+                buffer.force();
+            }
+            channel.close();
+        }
+
+        /**
+         * The all-zero key marks empty slots, so the (practically impossible)
+         * all-zero digest is stored with its last bit set instead.
+         */
+        private static byte[] nonZero(byte[] key) {
+            for (byte b : key) {
+                if (b != 0) {
+                    return key;
+                }
+            }
+            final byte[] changed = key.clone();
+            changed[changed.length - 1] = 1;
+            return changed;
+        }
+    }
+}
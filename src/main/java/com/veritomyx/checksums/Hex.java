@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Table-driven lowercase hexadecimal encoding, to avoid pulling in a codec
+ * library for the 20 bytes of a digest.
+ */
+public final class Hex {
+
+    private final static char[] DIGITS = "0123456789abcdef".toCharArray();
+    private final static byte[] ASCII_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private final static byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            VALUES['a' + i] = (byte) (10 + i);
+            VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private Hex() {
+    }
+
+    public static String encode(byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[2 * i + 1] = DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Encodes bytes as lowercase US-ASCII hexadecimal digits into an array,
+     * such as a checksum line being assembled.
+     *
+     * @param bytes  Bytes to encode
+     * @param ascii  Array to write two digits per byte to
+     * @param offset Offset in the array of the first digit
+     */
+    public static void encode(byte[] bytes, byte[] ascii, int offset) {
+        for (int i = 0; i < bytes.length; i++) {
+            ascii[offset + 2 * i] = ASCII_DIGITS[(bytes[i] >> 4) & 0xF];
+            ascii[offset + 2 * i + 1] = ASCII_DIGITS[bytes[i] & 0xF];
+        }
+    }
+
+    /**
+     * Compares bytes with their lowercase encoding as US-ASCII digits, such
+     * as those of a checksum line, taking the same time wherever they first
+     * differ. Uppercase digits don't match.
+     *
+     * @param bytes  Bytes, such as a calculated digest
+     * @param ascii  Array holding two digits per byte
+     * @param offset Offset in the array of the first digit
+     * @return Whether the digits are the encoding of the bytes
+     */
+    public static boolean matches(byte[] bytes, byte[] ascii, int offset) {
+        int difference = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            difference |= ascii[offset + 2 * i] ^ ASCII_DIGITS[(bytes[i] >> 4) & 0xF];
+            difference |= ascii[offset + 2 * i + 1] ^ ASCII_DIGITS[bytes[i] & 0xF];
+        }
+        return difference == 0;
+    }
+
+    /**
+     * @param text Even number of hexadecimal digits, in either case
+     * @return Decoded bytes
+     * @throws IllegalArgumentException if the text is not hexadecimal
+     */
+    public static byte[] decode(CharSequence text) {
+        if (text.length() % 2 != 0) {
+            throw new IllegalArgumentException("odd number of hex digits");
+        }
+
+        final byte[] bytes = new byte[text.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((value(text.charAt(2 * i)) << 4) | value(text.charAt(2 * i + 1)));
+        }
+        return bytes;
+    }
+
+    private static int value(char c) {
+        final int value = c < VALUES.length ? VALUES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("not a hex digit: '" + c + "'");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Buffer size, whether to memory-map large files, and how many files to
+ * read at once, chosen for the storage a file is on.
+ *
+ * <p>The first time a file on a device is tuned that's large enough, a few
+ * MiB of it are read with each candidate buffer size and through a mapping.
+ * The fastest way to read wins, and the latency of the first read sets the
+ * parallelism. Until then, files get settings from the type of file system,
+ * which never map, as a mapping is only used where it was measured to be
+ * faster. Network file systems are never mapped, as a file truncated by
+ * another client would crash the JVM. The measured result is cached for
+ * each device for the life of the process, so long-running commands probe
+ * only once; other threads keep the defaults while one probes.</p>
+ *
+ * <p>Each choice can be overridden with the system properties
+ * "checksums.io.bufferSize", "checksums.io.mmap" and
+ * "checksums.io.parallelism". Setting "checksums.io.tune" to false skips
+ * probing and uses the defaults for the type of file system.</p>
+ */
+public final class IoTuning {
+
+    public final static int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    // files smaller than this are worth mapping on no device
+    public final static long MMAP_THRESHOLD = 4 * 1024 * 1024;
+
+    private final static int[] BUFFER_SIZES = { 16 * 1024, 64 * 1024, 256 * 1024, 1024 * 1024 };
+    private final static int PROBE_REGION = 1024 * 1024;
+    private final static long PROBE_MIN_SIZE = (BUFFER_SIZES.length + 1) * (long) PROBE_REGION;
+    private final static int CPUS = Runtime.getRuntime().availableProcessors();
+
+    private final static Set<String> NETWORK_TYPES = new HashSet<>(Arrays.asList(
+            "nfs", "nfs4", "cifs", "smb", "smbfs", "smb3", "9p", "ceph", "glusterfs", "lustre", "afs", "webdav"));
+
+    private final static Map<Object, IoTuning> MEASURED = new ConcurrentHashMap<>();
+    private final static Map<Object, IoTuning> DEFAULTS = new ConcurrentHashMap<>();
+    private final static Set<Object> PROBING = ConcurrentHashMap.newKeySet();
+
+    // keeps the probe of a mapping from being optimized away
+    private static volatile long sink;
+
+    private final int bufferSize;
+    private final boolean mmap;
+    private final int parallelism;
+
+    public IoTuning(int bufferSize, boolean mmap, int parallelism) {
+        this.bufferSize = bufferSize;
+        this.mmap = mmap;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return Size of buffers for reading and writing files on the device
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @param size Size of a file on the device
+     * @return Whether to read the file through a mapping
+     */
+    public boolean shouldMap(long size) {
+        return mmap && size >= MMAP_THRESHOLD;
+    }
+
+    /**
+     * @return Number of files to read at once on the device
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Opens a file for reading as tuned for its device, through a mapping
+     * or a buffer of the chosen size.
+     *
+     * @param path File to read
+     * @return A new input stream
+     * @throws IOException if an I/O error occurs opening the file
+     */
+    public static InputStream open(Path path) throws IOException {
+        final IoTuning tuning = forPath(path);
+        if (tuning.shouldMap(Files.size(path))) {
+            return new MappedInputStream(path);
+        }
+        return new BufferedInputStream(Files.newInputStream(path), tuning.getBufferSize());
+    }
+
+    /**
+     * Returns the tuning for the device holding a file, probing it with the
+     * first file large enough. Files that don't exist yet, such as output,
+     * are tuned for their directory.
+     *
+     * @param path A file or directory
+     * @return Tuning for its device
+     */
+    public static IoTuning forPath(Path path) {
+        try {
+            final Path existing = Files.exists(path) ? path : path.toAbsolutePath().getParent();
+            final Object device = device(existing);
+            final IoTuning measured = MEASURED.get(device);
+            if (measured != null) {
+                return measured;
+            }
+
+            IoTuning defaults = DEFAULTS.get(device);
+            if (defaults == null) {
+                // the file store is looked up outside the map, as it may be slow
+                defaults = overridden(defaults(isNetwork(existing)));
+                DEFAULTS.putIfAbsent(device, defaults);
+            }
+
+            return shouldProbe(existing) ? probe(device, existing, defaults) : defaults;
+        } catch (IOException | UnsupportedOperationException e) {
+            return overridden(defaults(false));
+        }
+    }
+
+    private static Object device(Path path) throws IOException {
+        try {
+            return Files.getAttribute(path, "unix:dev");
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // looking up the store is slower, so only done where there's no device number
+            return Files.getFileStore(path);
+        }
+    }
+
+    private static boolean isNetwork(Path path) throws IOException {
+        final FileStore store = Files.getFileStore(path);
+        return NETWORK_TYPES.contains(store.type()) || store.type().startsWith("fuse");
+    }
+
+    private static boolean shouldProbe(Path path) throws IOException {
+        return Boolean.parseBoolean(System.getProperty("checksums.io.tune", "true"))
+                && Files.isRegularFile(path) && Files.size(path) >= PROBE_MIN_SIZE;
+    }
+
+    /**
+     * Measures a device with a file on it, unless another thread already is,
+     * in which case the defaults are used meanwhile. A probe that fails is
+     * tried again with the next file large enough.
+     */
+    private static IoTuning probe(Object device, Path path, IoTuning defaults) {
+        if (!PROBING.add(device)) {
+            return defaults;
+        }
+
+        try {
+            // another thread may have finished probing since this one looked
+            final IoTuning measured = MEASURED.get(device);
+            if (measured != null) {
+                return measured;
+            }
+
+            final IoTuning tuning = overridden(measure(path, isNetwork(path)));
+            MEASURED.put(device, tuning);
+            return tuning;
+        } catch (IOException e) {
+            return defaults;
+        } finally {
+            PROBING.remove(device);
+        }
+    }
+
+    private static IoTuning defaults(boolean network) {
+        return network
+                ? new IoTuning(1024 * 1024, false, 4 * CPUS)
+                : new IoTuning(DEFAULT_BUFFER_SIZE, false, CPUS);
+    }
+
+    /**
+     * Reads a separate region of the file with each buffer size and through
+     * a mapping, so that each starts equally cold.
+     */
+    private static IoTuning measure(Path path, boolean network) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the end of the file is beyond any read-ahead of the regions
+            final ByteBuffer last = ByteBuffer.allocate(4096);
+            long start = System.nanoTime();
+            channel.read(last, channel.size() - last.capacity());
+            final long latency = System.nanoTime() - start;
+
+            int bestSize = DEFAULT_BUFFER_SIZE;
+            double bestRate = 0;
+            for (int i = 0; i < BUFFER_SIZES.length; i++) {
+                final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZES[i]);
+                final long offset = (long) i * PROBE_REGION;
+                start = System.nanoTime();
+                for (long position = offset; position < offset + PROBE_REGION; position += buffer.capacity()) {
+                    buffer.clear();
+                    channel.read(buffer, position);
+                }
+                final double rate = PROBE_REGION / (double) Math.max(1, System.nanoTime() - start);
+                // a larger buffer has to be clearly faster to be worth its memory
+                if (rate > bestRate * 1.1) {
+                    bestRate = rate;
+                    bestSize = BUFFER_SIZES[i];
+                }
+            }
+
+            boolean mmap = false;
+            if (!network) {
+                start = System.nanoTime();
+                final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                        (long) BUFFER_SIZES.length * PROBE_REGION, PROBE_REGION);
+                long sum = 0;
+                for (int i = 0; i < PROBE_REGION; i += 4096) {
+                    sum += mapped.get(i);
+                }
+                final double rate = PROBE_REGION / (double) Math.max(1, System.nanoTime() - start);
+                sink = sum;
+                mmap = rate > bestRate * 1.2;
+            }
+
+            // keep enough reads in flight to cover the latency of each
+            final int perCpu = (int) Math.min(8, Math.max(1, latency / 1_000_000));
+            return new IoTuning(bestSize, mmap, (network ? 4 : perCpu) * CPUS);
+        }
+    }
+
+    private static IoTuning overridden(IoTuning tuning) {
+        return new IoTuning(
+                Integer.getInteger("checksums.io.bufferSize", tuning.bufferSize),
+                Boolean.parseBoolean(System.getProperty("checksums.io.mmap", Boolean.toString(tuning.mmap))),
+                Integer.getInteger("checksums.io.parallelism", tuning.parallelism));
+    }
+
+    @Override
+    public String toString() {
+        return "buffer " + bufferSize + ", mmap " + mmap + ", parallelism " + parallelism;
+    }
+}
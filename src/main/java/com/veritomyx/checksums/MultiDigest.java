@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * Calculates several digests over the same bytes in a single pass.
+ *
+ * <p>Algorithms are any supported by {@link MessageDigest}, plus "CRC32" and
+ * "CRC32C" (the latter when running on Java 9 or newer). CRC values are
+ * returned as four big-endian bytes.</p>
+ *
+ * <p>When created with {@code parallel}, large buffers given to
+ * {@link #update(byte[], int, int)} are fed to the digests concurrently on
+ * the common fork/join pool.</p>
+ */
+public class MultiDigest {
+
+    private final static int PARALLEL_THRESHOLD = 64 * 1024;
+
+    private final List<String> algorithms;
+    private final List<Engine> engines = new ArrayList<>();
+    private final boolean parallel;
+
+    public MultiDigest(String... algorithms) throws NoSuchAlgorithmException {
+        this(Arrays.asList(algorithms), false);
+    }
+
+    /**
+     * @param algorithms Names of the digests, without duplicates
+     * @param parallel   Whether large updates are spread across cores
+     * @throws NoSuchAlgorithmException if an algorithm is not supported
+     */
+    public MultiDigest(List<String> algorithms, boolean parallel) throws NoSuchAlgorithmException {
+        this.algorithms = Collections.unmodifiableList(new ArrayList<>(algorithms));
+        this.parallel = parallel;
+        for (String algorithm : algorithms) {
+            engines.add(createEngine(algorithm));
+        }
+    }
+
+    public List<String> getAlgorithms() {
+        return algorithms;
+    }
+
+    public void update(byte b) {
+        for (Engine engine : engines) {
+            engine.update(b);
+        }
+    }
+
+    public void update(byte[] b, int off, int len) {
+        if (!parallel || engines.size() < 2 || len < PARALLEL_THRESHOLD) {
+            for (Engine engine : engines) {
+                engine.update(b, off, len);
+            }
+            return;
+        }
+
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Engine engine : engines.subList(1, engines.size())) {
+            futures.add(CompletableFuture.runAsync(() -> engine.update(b, off, len)));
+        }
+        engines.get(0).update(b, off, len);
+        for (CompletableFuture<Void> future : futures) {
+            future.join();
+        }
+    }
+
+    /**
+     * Completes all digests, which are then reset.
+     *
+     * @return Digest values keyed by algorithm, in the order given
+     */
+    public Map<String, byte[]> digest() {
+        final Map<String, byte[]> digests = new LinkedHashMap<>();
+        for (int i = 0; i < engines.size(); i++) {
+            digests.put(algorithms.get(i), engines.get(i).digest());
+        }
+        return digests;
+    }
+
+    /**
+     * @return The given algorithms with another one first, without duplicating it
+     */
+    static List<String> including(String first, List<String> algorithms) {
+        final List<String> all = new ArrayList<>();
+        all.add(first);
+        for (String algorithm : algorithms) {
+            if (!algorithm.equalsIgnoreCase(first)) {
+                all.add(algorithm);
+            }
+        }
+        return all;
+    }
+
+    private static Engine createEngine(String algorithm) throws NoSuchAlgorithmException {
+        switch (algorithm.toUpperCase()) {
+            case "CRC32":
+                return new ChecksumEngine(new CRC32());
+            case "CRC32C":
+                try {
+                    // only part of the JDK from Java 9
+                    return new ChecksumEngine((java.util.zip.Checksum)
+                            Class.forName("java.util.zip.CRC32C").getConstructor().newInstance());
+                } catch (ReflectiveOperationException e) {
+                    throw new NoSuchAlgorithmException("CRC32C requires Java 9 or newer");
+                }
+            default:
+                return new MessageDigestEngine(MessageDigest.getInstance(algorithm));
+        }
+    }
+
+    private interface Engine {
+        void update(byte b);
+
+        void update(byte[] b, int off, int len);
+
+        byte[] digest();
+    }
+
+    private static class MessageDigestEngine implements Engine {
+
+        private final MessageDigest digest;
+
+        MessageDigestEngine(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void update(byte b) {
+            digest.update(b);
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            digest.update(b, off, len);
+        }
+
+        @Override
+        public byte[] digest() {
+            return digest.digest();
+        }
+    }
+
+    private static class ChecksumEngine implements Engine {
+
+        private final java.util.zip.Checksum checksum;
+
+        ChecksumEngine(java.util.zip.Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public void update(byte b) {
+            checksum.update(b);
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            checksum.update(b, off, len);
+        }
+
+        @Override
+        public byte[] digest() {
+            final long value = checksum.getValue();
+            checksum.reset();
+            return new byte[] { (byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value };
+        }
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The index at the end of a file made of segments, each with its own
+ * digest, so that the segments can be verified independently and in
+ * parallel without hashing the file as a whole.
+ *
+ * <p>The segments are followed by one line per segment, "# segment:" and its
+ * offset, length and SHA-1 digest separated by colons, then by a final line,
+ * "# segments:" and the number of segments, the offset of the index and the
+ * SHA-1 digest of the segment lines. The final line vouches only for the
+ * index, which in turn vouches for the content, so the file is written
+ * without hashing anything but the index. Segments start at zero and follow
+ * each other, ending where the index starts.</p>
+ *
+ * <p>Such a file has no "# checksum:" line of its own and is reported as
+ * missing one by {@link ChecksumInputStream}.</p>
+ */
+public final class SegmentIndex {
+
+    private final static String ALGORITHM = "SHA-1";
+    private final static String SEGMENT_PREFIX = "# segment:";
+    private final static String PREFIX = "# segments:";
+
+    // longest final line: prefix, two longs, separators, digest and newline
+    private final static int MAX_LINE = PREFIX.length() + 2 * 19 + 2 + 40 + 1;
+    // longest segment line, likewise
+    private final static int MAX_SEGMENT_LINE = SEGMENT_PREFIX.length() + 2 * 19 + 2 + 40 + 1;
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A range of a file and its digest.
+     */
+    public static final class Segment {
+        private final long offset;
+        private final long length;
+        private final byte[] digest;
+
+        public Segment(long offset, long length, byte[] digest) {
+            if (offset < 0 || length < 0 || digest.length != 20) {
+                throw new IllegalArgumentException("invalid segment");
+            }
+            this.offset = offset;
+            this.length = length;
+            this.digest = digest.clone();
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public byte[] getDigest() {
+            return digest.clone();
+        }
+    }
+
+    private final List<Segment> segments;
+    private final byte[] digest;
+
+    private SegmentIndex(List<Segment> segments, byte[] digest) {
+        this.segments = segments;
+        this.digest = digest;
+    }
+
+    /**
+     * Writes the index of segments that were just written to a stream.
+     *
+     * @param out      Stream the segments were written to
+     * @param segments Segments from the start of the stream, in order
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     * @throws IOException              if an I/O error occurs, or the segments don't follow each other
+     */
+    public static void write(OutputStream out, List<Segment> segments) throws NoSuchAlgorithmException, IOException {
+        final StringBuilder lines = new StringBuilder();
+        long end = 0;
+        for (Segment segment : segments) {
+            if (segment.offset != end) {
+                throw new IOException("segments must follow each other from the start");
+            }
+            lines.append(SEGMENT_PREFIX).append(segment.offset).append(':').append(segment.length).append(':')
+                    .append(Hex.encode(segment.digest)).append('\n');
+            end = segment.offset + segment.length;
+        }
+
+        final byte[] index = lines.toString().getBytes(StandardCharsets.US_ASCII);
+        final String line = PREFIX + segments.size() + ":" + end + ":" + Hex.encode(sha1().digest(index)) + "\n";
+        out.write(index);
+        out.write(line.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Reads the index of a file with two positional reads, checking it
+     * against the digest in its final line.
+     *
+     * @param path File to read
+     * @return The index, or empty if the file doesn't end with one
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     * @throws InvalidChecksumException if the index doesn't match its digest or the file
+     * @throws IOException              if an I/O error occurs
+     */
+    public static Optional<SegmentIndex> read(Path path) throws NoSuchAlgorithmException, IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final byte[] tail = read(channel, Math.max(0, size - MAX_LINE), (int) Math.min(size, MAX_LINE));
+            final int start = finalLine(tail, size);
+            if (start < 0) {
+                return Optional.empty();
+            }
+
+            final String line = new String(tail, start, tail.length - 1 - start, StandardCharsets.US_ASCII);
+
+            final String[] fields = line.substring(PREFIX.length()).split(":", -1);
+            final long count;
+            final long indexOffset;
+            final byte[] digest;
+            try {
+                if (fields.length != 3) {
+                    return Optional.empty();
+                }
+                count = Long.parseLong(fields[0]);
+                indexOffset = Long.parseLong(fields[1]);
+                digest = Hex.decode(fields[2]);
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+
+            // the final line isn't trusted yet, so it mustn't make a large file be read into memory
+            final long indexLength = size - (tail.length - start) - indexOffset;
+            if (digest.length != 20 || count < 0 || count > Integer.MAX_VALUE / MAX_SEGMENT_LINE
+                    || indexOffset < 0 || indexLength < 0 || indexLength > count * MAX_SEGMENT_LINE) {
+                throw new InvalidChecksumException();
+            }
+
+            final byte[] index = read(channel, indexOffset, (int) indexLength);
+            // the digest as written, which verifies only if in lowercase
+            final int hexOffset = start + PREFIX.length() + fields[0].length() + fields[1].length() + 2;
+            if (!Hex.matches(sha1().digest(index), tail, hexOffset)) {
+                throw new InvalidChecksumException();
+            }
+
+            return Optional.of(new SegmentIndex(parse(index, count, indexOffset), digest));
+        }
+    }
+
+    /**
+     * Returns whether content ends with a line starting as the final line of
+     * an index does, without checking the index, so that content already in
+     * memory is only hashed whole when it can't be verified by segments.
+     *
+     * @param content Content of a whole file, which is left as it is
+     * @return Whether the content may end with an index
+     */
+    public static boolean mayEndWithIndex(ByteBuffer content) {
+        final byte[] tail = new byte[Math.min(content.remaining(), MAX_LINE)];
+        final ByteBuffer end = content.duplicate();
+        end.position(end.limit() - tail.length);
+        end.get(tail);
+        return finalLine(tail, content.remaining()) >= 0;
+    }
+
+    /**
+     * Finds where the final line of an index starts in the tail of a file.
+     *
+     * @param tail Last bytes of the file, up to the longest final line
+     * @param size Size of the file
+     * @return Offset of the line in the tail, or -1 if the file doesn't end with one
+     */
+    private static int finalLine(byte[] tail, long size) {
+        if (tail.length == 0 || tail[tail.length - 1] != '\n') {
+            return -1;
+        }
+
+        int start = tail.length - 1;
+        while (start > 0 && tail[start - 1] != '\n') {
+            start--;
+        }
+        if (start == 0 && size > tail.length) {
+            return -1;
+        }
+
+        final String line = new String(tail, start, tail.length - 1 - start, StandardCharsets.US_ASCII);
+        return line.startsWith(PREFIX) ? start : -1;
+    }
+
+    /**
+     * Parses the segment lines of an index whose digest has been checked.
+     */
+    private static List<Segment> parse(byte[] index, long count, long indexOffset) throws InvalidChecksumException {
+        final List<Segment> segments = new ArrayList<>();
+        long end = 0;
+        int start = 0;
+        while (start < index.length) {
+            int stop = start;
+            while (stop < index.length && index[stop] != '\n') {
+                stop++;
+            }
+            final String line = new String(index, start, stop - start, StandardCharsets.US_ASCII);
+            start = stop + 1;
+
+            final String[] fields = line.startsWith(SEGMENT_PREFIX)
+                    ? line.substring(SEGMENT_PREFIX.length()).split(":", -1) : new String[0];
+            try {
+                if (fields.length != 3 || Long.parseLong(fields[0]) != end) {
+                    throw new InvalidChecksumException();
+                }
+                final Segment segment = new Segment(end, Long.parseLong(fields[1]), Hex.decode(fields[2]));
+                segments.add(segment);
+                end += segment.length;
+            } catch (IllegalArgumentException e) {
+                throw new InvalidChecksumException();
+            }
+        }
+
+        if (segments.size() != count || end != indexOffset) {
+            throw new InvalidChecksumException();
+        }
+        return Collections.unmodifiableList(segments);
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new IOException("file changed while reading");
+            }
+        }
+        return buffer.array();
+    }
+
+    public String getAlgorithm() {
+        return ALGORITHM;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return The digest of the index, which identifies the whole file
+     */
+    public byte[] getDigest() {
+        return digest.clone();
+    }
+
+    /**
+     * Verifies the segments of a file with positional reads, several at once.
+     *
+     * @param path    File the index was read from
+     * @param threads Number of segments read at once
+     * @return Positions in the index of the segments that don't match their digest, in order
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     * @throws IOException              if an I/O error occurs
+     */
+    public List<Integer> verify(Path path, int threads) throws NoSuchAlgorithmException, IOException {
+        final ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, segments.size())));
+        try {
+            return verify(path, workers);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Verifies the segments of a file with positional reads on a pool that
+     * is shared with other work, and left running.
+     *
+     * @param path    File the index was read from
+     * @param workers Pool that reads the segments
+     * @return Positions in the index of the segments that don't match their digest, in order
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     * @throws IOException              if an I/O error occurs
+     */
+    public List<Integer> verify(Path path, ExecutorService workers) throws NoSuchAlgorithmException, IOException {
+        final List<Future<Boolean>> results = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (Segment segment : segments) {
+                results.add(workers.submit(() -> verify(channel, segment)));
+            }
+
+            final List<Integer> invalid = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                if (!results.get(i).get()) {
+                    invalid.add(i);
+                }
+            }
+            return invalid;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof NoSuchAlgorithmException) {
+                throw (NoSuchAlgorithmException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            // segments not read yet once one has failed are of no interest
+            for (Future<Boolean> result : results) {
+                result.cancel(false);
+            }
+        }
+    }
+
+    private static boolean verify(FileChannel channel, Segment segment) throws NoSuchAlgorithmException, IOException {
+        final MessageDigest sha1 = sha1();
+        final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(1, segment.length)));
+        long position = segment.offset;
+        final long end = segment.offset + segment.length;
+        while (position < end) {
+            buffer.clear();
+            if (end - position < buffer.capacity()) {
+                buffer.limit((int) (end - position));
+            }
+            final int len = channel.read(buffer, position);
+            if (len == -1) {
+                return false;
+            }
+            buffer.flip();
+            sha1.update(buffer);
+            position += len;
+        }
+        return MessageDigest.isEqual(sha1.digest(), segment.digest);
+    }
+
+    private static MessageDigest sha1() throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance(ALGORITHM);
+    }
+}
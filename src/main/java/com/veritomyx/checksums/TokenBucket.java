@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the rate of something, such as bytes read or read calls made, to
+ * an average per second with bursts up to a capacity. Taking more than is
+ * available leaves the bucket in debt, which the next taker waits out, so
+ * large and small amounts are limited alike. Safe for use by several
+ * threads.
+ */
+public class TokenBucket {
+
+    private final double rate;
+    private final double capacity;
+    private final LongSupplier clock;
+    private double tokens;
+    private long last;
+
+    /**
+     * @param rate     Tokens added per second
+     * @param capacity Most tokens held, which is the largest burst
+     */
+    public TokenBucket(double rate, double capacity) {
+        this(rate, capacity, System::nanoTime);
+    }
+
+    TokenBucket(double rate, double capacity, LongSupplier clock) {
+        if (rate <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("rate and capacity must be positive");
+        }
+
+        this.rate = rate;
+        this.capacity = capacity;
+        this.clock = clock;
+        this.tokens = capacity;
+        this.last = clock.getAsLong();
+    }
+
+    /**
+     * Takes tokens, waiting until the bucket is out of debt.
+     *
+     * @param count Number of tokens
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void acquire(long count) throws InterruptedIOException {
+        // parked rather than slept, as sleeps are rounded to milliseconds
+        final long deadline = System.nanoTime() + reserve(count);
+        long wait;
+        while ((wait = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, wait);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted");
+            }
+        }
+    }
+
+    /**
+     * Takes tokens without waiting.
+     *
+     * @param count Number of tokens
+     * @return Nanoseconds until the bucket is out of debt, or zero
+     */
+    synchronized long reserve(long count) {
+        final long now = clock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - last) * rate / 1e9);
+        last = now;
+
+        tokens -= count;
+        return tokens < 0 ? (long) Math.ceil(-tokens / rate * 1e9) : 0;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Standard streams and working directory for a single invocation of a
+ * command. Commands use this instead of {@link System} so they can also be
+ * run on behalf of a client by the serve command, which also shares its
+ * pools of threads for reading and verifying files between invocations.
+ */
+public class AppContext {
+
+    private final InputStream in;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final Path workingDirectory;
+    private final ExecutorService readers;
+    private final ExecutorService verifiers;
+
+    public AppContext(InputStream in, PrintStream out, PrintStream err, Path workingDirectory) {
+        this(in, out, err, workingDirectory, null, null);
+    }
+
+    /**
+     * @param readers   Pool shared between invocations for reading files, or null
+     * @param verifiers Pool shared between invocations for verifying content, or null
+     */
+    public AppContext(InputStream in, PrintStream out, PrintStream err, Path workingDirectory,
+                      ExecutorService readers, ExecutorService verifiers) {
+        this.in = in;
+        this.out = out;
+        this.err = err;
+        this.workingDirectory = workingDirectory;
+        this.readers = readers;
+        this.verifiers = verifiers;
+    }
+
+    /**
+     * @return A context using the streams and working directory of this process
+     */
+    public static AppContext system() {
+        return new AppContext(System.in, System.out, System.err, Paths.get("").toAbsolutePath());
+    }
+
+    public InputStream getIn() {
+        return in;
+    }
+
+    public PrintStream getOut() {
+        return out;
+    }
+
+    public PrintStream getErr() {
+        return err;
+    }
+
+    public Path getWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    /**
+     * @return Pool for reading files, if shared; commands must not shut it down
+     */
+    public Optional<ExecutorService> getReaders() {
+        return Optional.ofNullable(readers);
+    }
+
+    /**
+     * @return Pool for verifying content, if shared; commands must not shut it down
+     */
+    public Optional<ExecutorService> getVerifiers() {
+        return Optional.ofNullable(verifiers);
+    }
+
+    /**
+     * Resolves a filename given on the command line against the working
+     * directory of this invocation.
+     *
+     * @param filename Absolute or relative filename
+     * @return Resolved path
+     */
+    public Path resolve(String filename) {
+        return workingDirectory.resolve(filename);
+    }
+
+    /**
+     * Opens a filename given on the command line, where "-" means standard input.
+     *
+     * @param filename Filename or "-"
+     * @return A new (unbuffered) input stream
+     * @throws IOException if an I/O error occurs opening the file
+     */
+    public InputStream open(String filename) throws IOException {
+        if (filename.equals("-")) {
+            return in;
+        }
+
+        return Files.newInputStream(resolve(filename));
+    }
+}
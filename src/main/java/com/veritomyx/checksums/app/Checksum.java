@@ -35,34 +35,141 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.veritomyx.checksums.app.cat.CatApp;
 import com.veritomyx.checksums.app.cat.CatSettings;
+import com.veritomyx.checksums.app.dedup.DedupReportApp;
+import com.veritomyx.checksums.app.dedup.DedupReportSettings;
+import com.veritomyx.checksums.app.serve.ClientApp;
+import com.veritomyx.checksums.app.serve.ServeApp;
+import com.veritomyx.checksums.app.serve.ServeSettings;
+import com.veritomyx.checksums.app.show.ShowApp;
+import com.veritomyx.checksums.app.show.ShowSettings;
+import com.veritomyx.checksums.app.sign.SignApp;
+import com.veritomyx.checksums.app.sign.SignSettings;
+import com.veritomyx.checksums.app.verify.ScrubApp;
+import com.veritomyx.checksums.app.verify.ScrubSettings;
+import com.veritomyx.checksums.app.verify.SweepApp;
+import com.veritomyx.checksums.app.verify.SweepSettings;
+import com.veritomyx.checksums.app.verify.VerifyApp;
+import com.veritomyx.checksums.app.verify.VerifySettings;
+import com.veritomyx.checksums.app.watch.WatchApp;
+import com.veritomyx.checksums.app.watch.WatchSettings;
 
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
-class Checksum {
+public class Checksum {
 
     public static void main(String[] args) throws IOException, NoSuchAlgorithmException {
+        // the client is handled before any argument parsing to keep its startup minimal
+        final int status = args.length > 0 && args[0].equals("client")
+                ? ClientApp.run(Arrays.copyOfRange(args, 1, args.length))
+                : run(args, AppContext.system(), true);
+
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs a command on behalf of a client of the serve command. Commands
+     * that run for a long time or start other processes, such as serve,
+     * watch, sweep and scrub, are not available.
+     *
+     * @param args    Command line arguments of the client
+     * @param context Context for the invocation
+     * @return Exit status of the command
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     */
+    public static int runServed(String[] args, AppContext context) throws IOException, NoSuchAlgorithmException {
+        return run(args, context, false);
+    }
+
+    private static int run(String[] args, AppContext context, boolean allowLongRunning)
+            throws IOException, NoSuchAlgorithmException {
+
         final MainSettings mainSettings = new MainSettings();
         final CatSettings catSettings = new CatSettings();
-        final JCommander jCommander = JCommander.newBuilder()
+        final VerifySettings verifySettings = new VerifySettings();
+        final SignSettings signSettings = new SignSettings();
+        final ShowSettings showSettings = new ShowSettings();
+        final DedupReportSettings dedupReportSettings = new DedupReportSettings();
+        final ServeSettings serveSettings = new ServeSettings();
+        final WatchSettings watchSettings = new WatchSettings();
+        final SweepSettings sweepSettings = new SweepSettings();
+        final ScrubSettings scrubSettings = new ScrubSettings();
+        final JCommander.Builder builder = JCommander.newBuilder()
                 .addObject(mainSettings)
                 .addCommand("cat", catSettings)
-                .build();
+                .addCommand("verify", verifySettings)
+                .addCommand("sign", signSettings)
+                .addCommand("show", showSettings)
+                .addCommand("dedup-report", dedupReportSettings);
+        if (allowLongRunning) {
+            builder.addCommand("serve", serveSettings)
+                    .addCommand("watch", watchSettings)
+                    .addCommand("sweep", sweepSettings)
+                    .addCommand("scrub", scrubSettings);
+        }
 
+        final JCommander jCommander = builder.build();
         jCommander.parse(args);
 
         final String command = jCommander.getParsedCommand();
         if (command == null) {
-            jCommander.usage();
-            return;
+            return usage(jCommander, null, context);
         }
 
-        switch (jCommander.getParsedCommand()) {
+        switch (command) {
             case "cat":
-                runCat(jCommander, catSettings);
-                break;
+                if (catSettings.getHelp()) {
+                    return usage(jCommander, command, context);
+                }
+                return CatApp.run(catSettings.getFiles(), catSettings.getPrefetch() == null
+                        ? CatApp.prefetch(catSettings.getFiles(), context)
+                        : catSettings.getPrefetch(), catSettings.getSegments(), context);
+            case "verify":
+                if (verifySettings.getHelp()) {
+                    return usage(jCommander, command, context);
+                }
+                return VerifyApp.run(verifySettings, context);
+            case "sign":
+                if (signSettings.getHelp()) {
+                    return usage(jCommander, command, context);
+                }
+                return SignApp.run(signSettings, context);
+            case "show":
+                if (showSettings.getHelp()) {
+                    return usage(jCommander, command, context);
+                }
+                return ShowApp.run(showSettings, context);
+            case "dedup-report":
+                if (dedupReportSettings.getHelp()) {
+                    return usage(jCommander, command, context);
+                }
+                return DedupReportApp.run(dedupReportSettings, context);
+            case "serve":
+                if (serveSettings.getHelp()) {
+                    return usage(jCommander, command, context);
+                }
+                return ServeApp.run(serveSettings, context);
+            case "watch":
+                if (watchSettings.getHelp()) {
+                    return usage(jCommander, command, context);
+                }
+                return WatchApp.run(watchSettings, context);
+            case "sweep":
+                if (sweepSettings.getHelp()) {
+                    return usage(jCommander, command, context);
+                }
+                return SweepApp.run(sweepSettings, context);
+            case "scrub":
+                if (scrubSettings.getHelp()) {
+                    return usage(jCommander, command, context);
+                }
+                return ScrubApp.run(scrubSettings, context);
             default:
-                jCommander.usage();
+                return usage(jCommander, null, context);
         }
     }
 
@@ -75,12 +182,16 @@ class Checksum {
         }
     }
 
-    private static void runCat(JCommander jCommander, CatSettings catSettings) throws IOException, NoSuchAlgorithmException {
-        if (catSettings.getHelp()) {
-            jCommander.usage("cat");
-            return;
+    private static int usage(JCommander jCommander, String command, AppContext context) {
+        final StringBuilder builder = new StringBuilder();
+        if (command == null) {
+            jCommander.usage(builder);
+        } else {
+            jCommander.usage(command, builder);
         }
 
-        CatApp.main(catSettings.getFiles().toArray(new String[0]));
+        context.getOut().print(builder);
+        context.getOut().flush();
+        return 0;
     }
 }
@@ -34,48 +34,296 @@ package com.veritomyx.checksums.app.cat;
 import com.veritomyx.checksums.ChecksumInputStream;
 import com.veritomyx.checksums.ChecksumOutputStream;
 import com.veritomyx.checksums.InvalidChecksumException;
+import com.veritomyx.checksums.IoTuning;
 import com.veritomyx.checksums.MissingChecksumException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.veritomyx.checksums.SegmentIndex;
+import com.veritomyx.checksums.app.AppContext;
 
 import java.io.*;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * Concatenates files, verifying each one. While one file is written, the
+ * next few are opened, read and verified by background threads. At most
+ * {@link #PREFETCH_LIMIT} bytes of each are held in memory; the rest of a
+ * larger file is read when its turn comes. Files are still written, and
+ * invalid checksums still reported, in the order they were given. Files
+ * are read as {@link IoTuning} chooses for their device, which also sets
+ * how many are read ahead unless given, up to {@link #MAX_PREFETCH}.
+ * Optionally, each file is kept as a segment of the result, with the digest
+ * it was verified against, in a {@link SegmentIndex} instead of a new
+ * checksum.
+ */
 public class CatApp {
 
-    private final static Logger LOGGER = LoggerFactory.getLogger("cat");
+    public final static int PREFETCH_LIMIT = 1024 * 1024;
+
+    // cat reads files in turn, so reads beyond a few ahead only hold memory
+    public final static int MAX_PREFETCH = 8;
 
     public static void main(String[] args) throws NoSuchAlgorithmException, IOException {
+        final int status = run(Arrays.asList(args), AppContext.system());
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Concatenates files, verifying each one, and writes the result with a
+     * new checksum to the output of the given context.
+     *
+     * @param files   Filenames to concatenate, where "-" means standard input
+     * @param context Context for the invocation
+     * @return Exit status, non-zero if an input has an invalid checksum
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     * @throws IOException              if an I/O error occurs
+     */
+    public static int run(List<String> files, AppContext context) throws NoSuchAlgorithmException, IOException {
+        return run(files, prefetch(files, context), context);
+    }
+
+    /**
+     * @param files   Filenames to concatenate, where "-" means standard input
+     * @param context Context for the invocation
+     * @return Number of files to read ahead, as tuned for the device of the
+     * first file named up to {@link #MAX_PREFETCH}, or zero if there is only
+     * standard input
+     */
+    public static int prefetch(List<String> files, AppContext context) {
+        final Optional<String> first = files.stream().filter(file -> !file.equals("-")).findFirst();
+        return first.isPresent()
+                ? Math.min(MAX_PREFETCH, IoTuning.forPath(context.resolve(first.get())).getParallelism()) : 0;
+    }
+
+    /**
+     * Concatenates files as {@link #run(List, AppContext)} does, reading
+     * ahead of the file being written.
+     *
+     * @param files    Filenames to concatenate, where "-" means standard input
+     * @param prefetch Number of files read ahead, or zero to read each in turn
+     * @param context  Context for the invocation
+     * @return Exit status, non-zero if an input has an invalid checksum
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     * @throws IOException              if an I/O error occurs
+     */
+    public static int run(List<String> files, int prefetch, AppContext context)
+            throws NoSuchAlgorithmException, IOException {
+        return run(files, prefetch, false, context);
+    }
 
-        final byte[] buffer = new byte[4096];
+    /**
+     * Concatenates files as {@link #run(List, int, AppContext)} does. With
+     * segments, the result ends with a {@link SegmentIndex} of the files
+     * instead of a checksum, so the content is not hashed again and each
+     * file can later be verified on its own.
+     *
+     * @param files    Filenames to concatenate, where "-" means standard input
+     * @param prefetch Number of files read ahead, or zero to read each in turn
+     * @param segments Whether to write a segment index instead of a checksum
+     * @param context  Context for the invocation
+     * @return Exit status, non-zero if an input has an invalid checksum
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     * @throws IOException              if an I/O error occurs
+     */
+    public static int run(List<String> files, int prefetch, boolean segments, AppContext context)
+            throws NoSuchAlgorithmException, IOException {
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("prefetch must not be negative: " + prefetch);
+        }
+
+        final byte[] buffer = new byte[IoTuning.DEFAULT_BUFFER_SIZE];
+        // the window bounds the reads in flight, so a shared pool serves as well as one of our own
+        final ExecutorService workers = prefetch == 0 ? null
+                : context.getReaders().orElseGet(() -> Executors.newFixedThreadPool(prefetch));
+        final Deque<Pending> window = new ArrayDeque<>();
 
         final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        try (OutputStream outputStream = new ChecksumOutputStream(bytes)) {
-
-            for (String arg : args) {
-                try (BufferedInputStream inputStream = new BufferedInputStream(new ChecksumInputStream(filenameToInputStream(arg)))) {
-                    int len = inputStream.read(buffer);
-                    while (len != -1) {
-                        outputStream.write(buffer, 0, len);
-                        len = inputStream.read(buffer);
-                    }
+        final List<SegmentIndex.Segment> index = new ArrayList<>();
+        try (OutputStream outputStream = segments ? bytes : new ChecksumOutputStream(bytes)) {
+
+            int next = 0;
+            while (next < files.size() || !window.isEmpty()) {
+                while (next < files.size() && window.size() <= prefetch) {
+                    final String file = files.get(next++);
+                    // standard input can only be read by one thread, in turn
+                    window.add(new Pending(file, workers == null || file.equals("-")
+                            ? null : workers.submit(() -> prefetch(context, file))));
+                }
+
+                final Pending pending = window.poll();
+                final Part part = pending.take(context);
+                final long offset = bytes.size();
+                try {
+                    write(part, outputStream, buffer);
                 } catch (MissingChecksumException e) {
-                    LOGGER.warn("Missing checksum: '{}'", arg);
+                    context.getErr().println("Missing checksum: '" + pending.file + "'");
                 } catch (InvalidChecksumException e) {
-                    LOGGER.error("Invalid checksum: '{}'", arg);
-                    System.exit(1);
+                    context.getErr().println("Invalid checksum: '" + pending.file + "'");
+                    return 1;
+                }
+
+                if (segments) {
+                    // the digest the file was just verified against, or calculated if it had none
+                    index.add(new SegmentIndex.Segment(offset, bytes.size() - offset,
+                            part.stream.getDigests().get("SHA-1")));
+                }
+            }
+
+            if (segments) {
+                SegmentIndex.write(outputStream, index);
+            }
+        } finally {
+            if (workers != null) {
+                if (!context.getReaders().isPresent()) {
+                    workers.shutdown();
+                }
+                for (Pending pending : window) {
+                    pending.discard();
                 }
             }
         }
 
-        System.out.write(bytes.toByteArray());
+        context.getOut().write(bytes.toByteArray());
+        context.getOut().flush();
+        return 0;
     }
 
-    private static InputStream filenameToInputStream(String filename) throws FileNotFoundException {
-        if (filename.equals("-")) {
-            return System.in;
+    /**
+     * Reads and verifies a file, or as much of it as fits in the limit.
+     */
+    private static Part prefetch(AppContext context, String file) throws NoSuchAlgorithmException, IOException {
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        final ChecksumInputStream stream = new ChecksumInputStream(open(context, file));
+        try {
+            while (head.size() < PREFETCH_LIMIT) {
+                final int len = stream.read(buffer);
+                if (len == -1) {
+                    stream.close();
+                    return new Part(head, stream, false, null);
+                }
+                head.write(buffer, 0, len);
+            }
+            return new Part(head, stream, true, null);
+        } catch (MissingChecksumException | InvalidChecksumException e) {
+            return new Part(head, stream, false, e);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(stream);
+            throw e;
         }
+    }
 
-        return new FileInputStream(filename);
+    /**
+     * Writes a file's content, throwing the result of its verification.
+     */
+    private static void write(Part part, OutputStream output, byte[] buffer) throws IOException {
+        part.head.writeTo(output);
+        if (part.failure != null) {
+            throw part.failure;
+        }
+
+        if (part.rest) {
+            try (InputStream inputStream = part.stream) {
+                int len = inputStream.read(buffer);
+                while (len != -1) {
+                    output.write(buffer, 0, len);
+                    len = inputStream.read(buffer);
+                }
+            }
+        }
+    }
+
+    private static InputStream open(AppContext context, String file) throws IOException {
+        return file.equals("-") ? context.getIn() : IoTuning.open(context.resolve(file));
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // only releasing the file; its checksum is no longer of interest
+        }
+    }
+
+    /**
+     * A file waiting to be written, and its prefetch if there is one.
+     */
+    private static class Pending {
+        private final String file;
+        private final Future<Part> future;
+
+        Pending(String file, Future<Part> future) {
+            this.file = file;
+            this.future = future;
+        }
+
+        Part take(AppContext context) throws NoSuchAlgorithmException, IOException {
+            if (future == null) {
+                return new Part(new ByteArrayOutputStream(0), new ChecksumInputStream(open(context, file)), true, null);
+            }
+
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+
+        /**
+         * Waits for a prefetch that is no longer needed, closing the file if
+         * it was left open.
+         */
+        void discard() {
+            if (future == null) {
+                return;
+            }
+
+            try {
+                final Part part = future.get();
+                if (part.rest) {
+                    closeQuietly(part.stream);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // the file failed to open or read and holds nothing
+            }
+        }
+    }
+
+    /**
+     * The content read from a file so far. Either the rest of the file is
+     * still to be read from its stream, or the whole file was read and
+     * verified, with the exception that verifying it threw, if any. Once
+     * the stream is closed, its digests are those of the whole file.
+     */
+    private static class Part {
+        private final ByteArrayOutputStream head;
+        private final ChecksumInputStream stream;
+        private final boolean rest;
+        private final IOException failure;
+
+        Part(ByteArrayOutputStream head, ChecksumInputStream stream, boolean rest, IOException failure) {
+            this.head = head;
+            this.stream = stream;
+            this.rest = rest;
+            this.failure = failure;
+        }
     }
 }
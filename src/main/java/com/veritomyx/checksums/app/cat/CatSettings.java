@@ -33,6 +33,7 @@ package com.veritomyx.checksums.app.cat;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import com.beust.jcommander.validators.PositiveInteger;
 
 import java.util.List;
 
@@ -42,6 +43,15 @@ public class CatSettings {
     @Parameter(description = "List of files to concatentate")
     private List<String> files;
 
+    @Parameter(names = "--prefetch", validateWith = PositiveInteger.class, description = "Number of files read "
+            + "and verified ahead of the one being written; by default, as tuned for the device of the first file, "
+            + "up to 8")
+    private Integer prefetch;
+
+    @Parameter(names = "--segments", description = "Keep each file as a segment with its own digest, ending the "
+            + "result with an index of the segments instead of a checksum")
+    private boolean segments;
+
     @Parameter(names = "--help", help = true, description = "Print usage")
     private boolean help;
 
@@ -49,6 +59,14 @@ public class CatSettings {
         return files;
     }
 
+    public Integer getPrefetch() {
+        return prefetch;
+    }
+
+    public boolean getSegments() {
+        return segments;
+    }
+
     public boolean getHelp() {
         return help;
     }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.dedup;
+
+import com.veritomyx.checksums.DedupIndex;
+import com.veritomyx.checksums.Hex;
+import com.veritomyx.checksums.app.AppContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Prints the totals of a dedup index, how much smaller the recorded files
+ * would be if each distinct chunk were stored once, and the chunks found in
+ * the most files.
+ */
+public class DedupReportApp {
+
+    /**
+     * @param settings Settings naming the index
+     * @param context  Context for the invocation
+     * @return Exit status
+     * @throws IOException if the index doesn't exist or can't be opened
+     */
+    public static int run(DedupReportSettings settings, AppContext context) throws IOException {
+        final PrintStream out = context.getOut();
+        try (DedupIndex index = DedupIndex.openReadOnly(context.resolve(settings.getIndex()))) {
+            final long logical = index.getLogicalBytes();
+            final long unique = index.getUniqueBytes();
+
+            out.println("files:             " + index.getFileCount());
+            out.println("distinct chunks:   " + index.getChunkCount());
+            out.println("chunk references:  " + index.getReferenceCount());
+            out.println("logical bytes:     " + logical);
+            out.println("unique bytes:      " + unique);
+            out.printf("redundancy:        %.2f%%%n", logical == 0 ? 0.0 : 100.0 * (logical - unique) / logical);
+
+            final List<Shared> shared = top(index, settings.getTop());
+            if (!shared.isEmpty()) {
+                out.println();
+                out.println("most shared chunks:");
+                for (Shared chunk : shared) {
+                    out.println(Hex.encode(chunk.digest) + " " + chunk.length + " bytes in " + chunk.files + " files");
+                }
+            }
+        }
+
+        out.flush();
+        return 0;
+    }
+
+    private static List<Shared> top(DedupIndex index, int count) {
+        final Comparator<Shared> order = Comparator.<Shared>comparingInt(chunk -> chunk.files)
+                .thenComparingLong(chunk -> (long) chunk.files * chunk.length);
+        final PriorityQueue<Shared> heap = new PriorityQueue<>(order);
+        if (count > 0) {
+            index.forEachChunk((digest, length, files) -> {
+                if (files < 2) {
+                    return;
+                }
+                heap.add(new Shared(digest, length, files));
+                if (heap.size() > count) {
+                    heap.poll();
+                }
+            });
+        }
+
+        final List<Shared> result = new ArrayList<>(heap);
+        result.sort(order.reversed());
+        return result;
+    }
+
+    private static class Shared {
+        private final byte[] digest;
+        private final int length;
+        private final int files;
+
+        private Shared(byte[] digest, int length, int files) {
+            this.digest = digest;
+            this.length = length;
+            this.files = files;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.serve;
+
+import com.veritomyx.checksums.app.AppContext;
+import com.veritomyx.checksums.app.Checksum;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.NoSuchFileException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Forwards a command line to a running server. Arguments are not parsed
+ * here, apart from an optional leading "--port", so that none of the command
+ * classes need to be loaded. The server's token is sent first, read from the
+ * file it wrote for the current user. When no server of this user is
+ * listening, or the server refuses the token, the command is run in this
+ * process instead.
+ */
+public class ClientApp {
+
+    /**
+     * @param args "[--port N] command [arguments]"
+     * @return Exit status of the command
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if SHA-1 is not found when running locally
+     */
+    public static int run(String[] args) throws IOException, NoSuchAlgorithmException {
+        int port = ServeProtocol.DEFAULT_PORT;
+        if (args.length >= 2 && args[0].equals("--port")) {
+            port = Integer.parseInt(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        return run(port, args, AppContext.system());
+    }
+
+    /**
+     * @param port    Port the server listens on
+     * @param args    Command and its arguments
+     * @param context Context whose streams and working directory are forwarded
+     * @return Exit status of the command
+     */
+    static int run(int port, String[] args, AppContext context) throws IOException, NoSuchAlgorithmException {
+        final String token;
+        final Socket socket;
+        try {
+            token = ServeProtocol.readToken(ServeProtocol.tokenFile(port));
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        } catch (NoSuchFileException | ConnectException e) {
+            return Checksum.runServed(args, context);
+        }
+
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+
+            ServeProtocol.writeRequest(out, token, context.getWorkingDirectory().toString(), args);
+            // nothing has been read from stdin yet, so a refused command can still be run here
+            if (!ServeProtocol.readAccepted(in)) {
+                return Checksum.runServed(args, context);
+            }
+
+            // stdin is sent concurrently so a command streaming its output can't deadlock us
+            final boolean readsStdin = Arrays.asList(args).contains("-");
+            final Thread sender = new Thread(() -> {
+                try {
+                    if (readsStdin) {
+                        ServeProtocol.writeChunks(context.getIn(), out);
+                    } else {
+                        out.writeInt(0);
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // the server stopped reading; its response says why
+                }
+            });
+            sender.setDaemon(true);
+            sender.start();
+
+            return ServeProtocol.readResponse(in, context.getOut(), context.getErr());
+        }
+    }
+}
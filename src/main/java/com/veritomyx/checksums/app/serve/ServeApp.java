@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.serve;
+
+import com.veritomyx.checksums.ChecksumInputStream;
+import com.veritomyx.checksums.ChecksumOutputStream;
+import com.veritomyx.checksums.Hex;
+import com.veritomyx.checksums.app.AppContext;
+import com.veritomyx.checksums.app.Checksum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ServeApp {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger("serve");
+    private final static int WARM_UP_SIZE = 1 << 20;
+    private final static int WARM_UP_ITERATIONS = 20;
+    private final static int TOKEN_SIZE = 32;
+
+    /**
+     * Listens on a loopback port and runs the commands forwarded by clients
+     * on a shared pool of workers, until the process is stopped. The cat,
+     * show and verify commands read files, and verify checks their content,
+     * on pools shared between requests too, so the number of threads
+     * doesn't grow with the number of requests. Only clients that send the
+     * token written for the current user are answered.
+     *
+     * @param settings Settings for the server
+     * @param context  Context for the invocation
+     * @return Exit status, only on failure to accept connections
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     * @throws IOException              if an I/O error occurs listening
+     */
+    public static int run(ServeSettings settings, AppContext context) throws NoSuchAlgorithmException, IOException {
+        warmUp();
+
+        final byte[] random = new byte[TOKEN_SIZE];
+        new SecureRandom().nextBytes(random);
+        final byte[] token = Hex.encode(random).getBytes(StandardCharsets.US_ASCII);
+
+        final ExecutorService workers = Executors.newFixedThreadPool(settings.getThreads());
+        final ExecutorService readers = Executors.newFixedThreadPool(settings.getIoThreads());
+        final ExecutorService verifiers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try (ServerSocket server = new ServerSocket(settings.getPort(), 0, InetAddress.getLoopbackAddress())) {
+            // written once the port is ours, so it never replaces the token of a server still running
+            final Path tokenFile = ServeProtocol.tokenFile(settings.getPort());
+            ServeProtocol.writeToken(tokenFile, new String(token, StandardCharsets.US_ASCII));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteQuietly(tokenFile)));
+
+            LOGGER.info("Listening on {} with {} workers", server.getLocalSocketAddress(), settings.getThreads());
+            while (true) {
+                final Socket socket = server.accept();
+                workers.execute(() -> handle(socket, token, readers, verifiers));
+            }
+        } finally {
+            workers.shutdown();
+            readers.shutdown();
+            verifiers.shutdown();
+        }
+    }
+
+    /**
+     * Reads what is left of a client's standard input. Closing the socket
+     * with input unread would reset the connection, and the client would
+     * lose the end of the response.
+     */
+    private static void drain(InputStream stdin) {
+        final byte[] buffer = new byte[4096];
+        try {
+            while (stdin.read(buffer) != -1) {
+                // discard
+            }
+        } catch (IOException e) {
+            // the client has its response and went away
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // a stale token only makes clients fail to connect and run locally
+        }
+    }
+
+    /**
+     * Signs and verifies generated data so the hot paths are compiled before
+     * the first client arrives.
+     */
+    private static void warmUp() throws NoSuchAlgorithmException, IOException {
+        final byte[] data = new byte[WARM_UP_SIZE];
+        new Random(0).nextBytes(data);
+
+        final byte[] buffer = new byte[4096];
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            final ByteArrayOutputStream signed = new ByteArrayOutputStream(WARM_UP_SIZE + 64);
+            try (OutputStream out = new ChecksumOutputStream(signed)) {
+                out.write(data);
+            }
+
+            try (InputStream in = new ChecksumInputStream(new ByteArrayInputStream(signed.toByteArray()))) {
+                while (in.read(buffer) != -1) {
+                    // discard
+                }
+            }
+        }
+    }
+
+    static void handle(Socket socket, byte[] token, ExecutorService readers, ExecutorService verifiers) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+
+            if (!MessageDigest.isEqual(in.readUTF().getBytes(StandardCharsets.US_ASCII), token)) {
+                LOGGER.warn("Refused a client without the token");
+                return;
+            }
+
+            final String workingDirectory = in.readUTF();
+            final String[] args = ServeProtocol.readArguments(in);
+            LOGGER.debug("Request in '{}': {}", workingDirectory, args);
+            ServeProtocol.writeAccepted(out);
+
+            final PrintStream stdout = new PrintStream(new BufferedOutputStream(
+                    new ServeProtocol.FrameOutputStream(out, ServeProtocol.STDOUT)));
+            final PrintStream stderr = new PrintStream(
+                    new ServeProtocol.FrameOutputStream(out, ServeProtocol.STDERR), true);
+            final InputStream stdin = new ServeProtocol.ChunkedInputStream(in);
+            final AppContext context = new AppContext(stdin, stdout, stderr, Paths.get(workingDirectory),
+                    readers, verifiers);
+
+            int status;
+            try {
+                status = Checksum.runServed(args, context);
+            } catch (Exception e) {
+                LOGGER.debug("Request failed", e);
+                stderr.println(e);
+                status = 1;
+            }
+
+            stdout.flush();
+            ServeProtocol.writeExit(out, status);
+
+            drain(stdin);
+        } catch (IOException e) {
+            LOGGER.warn("Lost connection to client: {}", e.getMessage());
+        }
+    }
+}
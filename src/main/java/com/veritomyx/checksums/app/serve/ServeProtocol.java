@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.serve;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/**
+ * Wire format shared by the serve and client commands.
+ *
+ * <p>A request is the server's token, the client's working directory and
+ * arguments. The server accepts it with a single byte, after which the
+ * client sends standard input as length-prefixed chunks, ending with an
+ * empty chunk. The response is a sequence of frames, each a type byte
+ * followed by a length-prefixed payload, ending with an exit frame carrying
+ * the status.</p>
+ *
+ * <p>Any local user can connect to a loopback port, so the server only
+ * accepts clients that send the random token it wrote at startup to a file
+ * in its user's home directory, readable by that user alone. Others are
+ * disconnected without a reply.</p>
+ */
+final class ServeProtocol {
+
+    static final int DEFAULT_PORT = 47357;
+
+    static final byte EXIT = 0;
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+    static final byte ACCEPTED = 3;
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private ServeProtocol() {
+    }
+
+    /**
+     * @return File holding the token of the server listening on a port
+     */
+    static Path tokenFile(int port) {
+        return Paths.get(System.getProperty("user.home"), ".checksums", "serve-" + port + ".token");
+    }
+
+    /**
+     * Writes a token where only the current user can read it, replacing any
+     * left by an earlier server. The file is complete before it appears.
+     */
+    static void writeToken(Path file, String token) throws IOException {
+        final boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        final Path directory = file.getParent();
+        final Path temp;
+        if (posix) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rwx------")));
+            temp = Files.createTempFile(directory, "token", ".tmp", PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rw-------")));
+        } else {
+            // without POSIX permissions, the user's profile is private already
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, "token", ".tmp");
+        }
+
+        try {
+            Files.write(temp, token.getBytes(StandardCharsets.US_ASCII));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static String readToken(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+    }
+
+    static void writeRequest(DataOutputStream out, String token, String workingDirectory, String[] args)
+            throws IOException {
+        out.writeUTF(token);
+        out.writeUTF(workingDirectory);
+        out.writeInt(args.length);
+        for (String arg : args) {
+            out.writeUTF(arg);
+        }
+        out.flush();
+    }
+
+    static void writeAccepted(DataOutputStream out) throws IOException {
+        out.writeByte(ACCEPTED);
+        out.flush();
+    }
+
+    /**
+     * @return Whether the server accepted the request, rather than closing the connection
+     */
+    static boolean readAccepted(DataInputStream in) {
+        try {
+            return in.read() == ACCEPTED;
+        } catch (IOException e) {
+            // reset by a server that closed with the request unread
+            return false;
+        }
+    }
+
+    static String[] readArguments(DataInputStream in) throws IOException {
+        final String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+        return args;
+    }
+
+    /**
+     * Forwards a stream as chunks, ending with an empty chunk.
+     */
+    static void writeChunks(InputStream in, DataOutputStream out) throws IOException {
+        final byte[] buffer = new byte[CHUNK_SIZE];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.writeInt(len);
+            out.write(buffer, 0, len);
+            out.flush();
+        }
+        out.writeInt(0);
+        out.flush();
+    }
+
+    /**
+     * Input stream over the chunks written by {@link #writeChunks}.
+     */
+    static class ChunkedInputStream extends InputStream {
+
+        private final DataInputStream in;
+        private int remaining;
+        private boolean finished;
+
+        ChunkedInputStream(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                return -1;
+            }
+
+            if (remaining == 0) {
+                remaining = in.readInt();
+                if (remaining == 0) {
+                    finished = true;
+                    return -1;
+                }
+            }
+
+            final int count = in.read(b, off, Math.min(len, remaining));
+            if (count == -1) {
+                throw new IOException("client closed connection mid-chunk");
+            }
+            remaining -= count;
+            return count;
+        }
+    }
+
+    /**
+     * Output stream that sends everything written to it as frames of one
+     * type. Frames of different types share the underlying stream, so
+     * writes are serialized on it.
+     */
+    static class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+
+    static void writeExit(DataOutputStream out, int status) throws IOException {
+        synchronized (out) {
+            out.writeByte(EXIT);
+            out.writeInt(status);
+            out.flush();
+        }
+    }
+
+    /**
+     * Copies frames to the given streams until the exit frame arrives.
+     *
+     * @return Exit status sent by the server
+     */
+    static int readResponse(DataInputStream in, OutputStream stdout, OutputStream stderr) throws IOException {
+        final byte[] buffer = new byte[CHUNK_SIZE];
+        while (true) {
+            final byte type = in.readByte();
+            if (type == EXIT) {
+                stdout.flush();
+                stderr.flush();
+                return in.readInt();
+            }
+
+            final OutputStream target = type == STDERR ? stderr : stdout;
+            int remaining = in.readInt();
+            while (remaining > 0) {
+                final int len = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (len == -1) {
+                    throw new IOException("server closed connection mid-frame");
+                }
+                target.write(buffer, 0, len);
+                remaining -= len;
+            }
+        }
+    }
+}
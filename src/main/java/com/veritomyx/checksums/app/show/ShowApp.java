@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.show;
+
+import com.veritomyx.checksums.ChecksumTrailer;
+import com.veritomyx.checksums.Hex;
+import com.veritomyx.checksums.InvalidChecksumException;
+import com.veritomyx.checksums.SegmentIndex;
+import com.veritomyx.checksums.app.AppContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Prints the stored checksum of each file in the BSD tagged format, or
+ * "MISSING" when a file doesn't end with one. A file ending with a
+ * {@link SegmentIndex} is shown with the digest of its index, as
+ * "SEGMENTS", once the index has been checked. Only the end of each
+ * file is read, by several threads at once, while results are printed in
+ * the order the files were given.
+ */
+public class ShowApp {
+
+    /**
+     * @param settings Settings naming the files
+     * @param context  Context for the invocation
+     * @return Exit status, non-zero if any file has no checksum or can't be read
+     * @throws IOException if an I/O error occurs reading the list of files
+     */
+    public static int run(ShowSettings settings, AppContext context) throws IOException {
+        final ShowApp app = new ShowApp(settings.getThreads(), context);
+        try {
+            for (String file : settings.getFiles()) {
+                app.submit(file);
+            }
+
+            if (settings.getFilesFrom() != null) {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(context.open(settings.getFilesFrom()), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.isEmpty()) {
+                            app.submit(line);
+                        }
+                    }
+                }
+            }
+
+            while (!app.window.isEmpty()) {
+                app.printNext();
+            }
+        } finally {
+            if (context.getReaders().isPresent()) {
+                app.window.forEach(line -> line.cancel(true));
+            } else {
+                app.workers.shutdownNow();
+            }
+        }
+
+        context.getOut().flush();
+        return app.status;
+    }
+
+    private final AppContext context;
+    private final ExecutorService workers;
+    private final Deque<Future<Line>> window = new ArrayDeque<>();
+    private final int windowSize;
+    private int status;
+
+    private ShowApp(int threads, AppContext context) {
+        this.context = context;
+        this.workers = context.getReaders().orElseGet(() -> Executors.newFixedThreadPool(threads));
+        this.windowSize = 4 * threads;
+    }
+
+    private void submit(String file) throws IOException {
+        if (window.size() >= windowSize) {
+            printNext();
+        }
+        window.add(workers.submit(() -> show(file)));
+    }
+
+    private void printNext() throws IOException {
+        final Line line;
+        try {
+            line = window.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+
+        context.getOut().println(line.text);
+        if (!line.found) {
+            status = 1;
+        }
+    }
+
+    private Line show(String file) {
+        try {
+            final Path path = context.resolve(file);
+            final Optional<ChecksumTrailer> trailer = ChecksumTrailer.read(path);
+            if (trailer.isPresent()) {
+                return new Line(trailer.get().getAlgorithm() + " (" + file + ") = " + trailer.get().getHex(), true);
+            }
+
+            final Optional<SegmentIndex> index = SegmentIndex.read(path);
+            if (!index.isPresent()) {
+                return new Line(file + ": MISSING", false);
+            }
+            return new Line("SEGMENTS (" + file + ") = " + Hex.encode(index.get().getDigest()), true);
+        } catch (InvalidChecksumException e) {
+            return new Line(file + ": INVALID INDEX", false);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return new Line(file + ": ERROR " + e, false);
+        }
+    }
+
+    private static class Line {
+        private final String text;
+        private final boolean found;
+
+        Line(String text, boolean found) {
+            this.text = text;
+            this.found = found;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.sign;
+
+import com.veritomyx.checksums.AppendedContentException;
+import com.veritomyx.checksums.ChecksumOutputStream;
+import com.veritomyx.checksums.ContentChunker;
+import com.veritomyx.checksums.DedupIndex;
+import com.veritomyx.checksums.InvalidChecksumException;
+import com.veritomyx.checksums.IoTuning;
+import com.veritomyx.checksums.app.AppContext;
+import com.veritomyx.checksums.app.Digests;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class SignApp {
+
+    /**
+     * Suffix of the temporary files written while signing in place.
+     */
+    public final static String TEMP_SUFFIX = ".signing";
+
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Appends checksums to files. Each file is written to a temporary file in
+     * the same directory that then replaces the original, so a failure never
+     * leaves a partially signed file behind. The original's permissions, and
+     * its owner and group where allowed, are kept. Files that already contain a
+     * valid checksum are left with exactly one; a file with content after its
+     * checksum line is left as it is and fails. Any additional digests
+     * requested are printed, to standard error when signing standard input.
+     * With a dedup index, the chunks of each file are recorded in the same
+     * pass.
+     *
+     * @param settings Settings naming the files, where "-" signs standard input to standard output
+     * @param context  Context for the invocation
+     * @return Exit status, non-zero if any file already has an invalid checksum or content after it
+     * @throws NoSuchAlgorithmException if SHA-1 or an additional digest is not found
+     * @throws IOException              if an I/O error occurs
+     */
+    public static int run(SignSettings settings, AppContext context) throws NoSuchAlgorithmException, IOException {
+        final List<String> algorithms = settings.getDigests();
+        int status = 0;
+        try (DedupIndex index = settings.getDedupIndex() == null
+                ? null : DedupIndex.open(context.resolve(settings.getDedupIndex()))) {
+
+            for (String file : settings.getFiles()) {
+                final DedupIndex.Recorder recorder = index == null ? null : index.recorder(context.resolve(file).toString());
+                final ContentChunker chunker = recorder == null ? null : new ContentChunker(recorder);
+                try {
+                    final Map<String, byte[]> digests;
+                    if (file.equals("-")) {
+                        final ChecksumOutputStream output = new ChecksumOutputStream(
+                                new UnclosedOutputStream(context.getOut()), algorithms);
+                        copy(new BufferedInputStream(context.getIn()), output, chunker);
+                        digests = output.getDigests();
+                        Digests.print(context.getErr(), file, digests, algorithms);
+                    } else {
+                        digests = sign(context.resolve(file), algorithms, chunker);
+                        Digests.print(context.getOut(), file, digests, algorithms);
+                    }
+
+                    if (chunker != null) {
+                        chunker.close();
+                        recorder.commit(digests.get("SHA-1"));
+                    }
+                } catch (InvalidChecksumException e) {
+                    context.getErr().println("Invalid checksum: '" + file + "'");
+                    status = 1;
+                } catch (AppendedContentException e) {
+                    context.getErr().println("Content after checksum: '" + file + "'");
+                    status = 1;
+                }
+            }
+        }
+
+        return status;
+    }
+
+    /**
+     * Appends a checksum to a file, replacing it in place.
+     *
+     * @param path Path of the file to sign
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     * @throws InvalidChecksumException if the file already has an invalid checksum
+     * @throws AppendedContentException if the file has content after its checksum line
+     * @throws IOException              if an I/O error occurs
+     */
+    public static void sign(Path path) throws NoSuchAlgorithmException, IOException {
+        sign(path, Collections.emptyList());
+    }
+
+    /**
+     * Appends a checksum to a file, replacing it in place, and calculates
+     * other digests of its content in the same pass.
+     *
+     * @param path       Path of the file to sign
+     * @param algorithms Additional digest algorithms
+     * @return Digests of the content, keyed by algorithm
+     * @throws NoSuchAlgorithmException if SHA-1 or an additional digest is not found
+     * @throws InvalidChecksumException if the file already has an invalid checksum
+     * @throws AppendedContentException if the file has content after its checksum line
+     * @throws IOException              if an I/O error occurs
+     */
+    public static Map<String, byte[]> sign(Path path, List<String> algorithms)
+            throws NoSuchAlgorithmException, IOException {
+        return sign(path, algorithms, null);
+    }
+
+    /**
+     * Appends a checksum to a file, replacing it in place, calculating other
+     * digests and writing what is read to another stream in the same pass.
+     *
+     * @param path       Path of the file to sign
+     * @param algorithms Additional digest algorithms
+     * @param content    Stream that receives the bytes read, or null; it is not closed
+     * @return Digests of the content, keyed by algorithm
+     * @throws NoSuchAlgorithmException if SHA-1 or an additional digest is not found
+     * @throws InvalidChecksumException if the file already has an invalid checksum
+     * @throws AppendedContentException if the file has content after its checksum line
+     * @throws IOException              if an I/O error occurs
+     */
+    public static Map<String, byte[]> sign(Path path, List<String> algorithms, OutputStream content)
+            throws NoSuchAlgorithmException, IOException {
+
+        final Path parent = path.toAbsolutePath().getParent();
+        final Path temp = Files.createTempFile(parent, "." + path.getFileName() + ".", TEMP_SUFFIX);
+        try {
+            final ChecksumOutputStream output = new ChecksumOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temp), IoTuning.forPath(parent).getBufferSize()), algorithms);
+            copy(IoTuning.open(path), output, content);
+            if (output.hasIgnoredContent()) {
+                throw new AppendedContentException();
+            }
+            copyAttributes(path, temp);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return output.getDigests();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Gives a temporary file the POSIX permissions, owner and group of the
+     * file it replaces, since it is created readable by its owner alone.
+     * Elsewhere, it inherits the permissions of its directory, as the
+     * original usually did.
+     */
+    private static void copyAttributes(Path from, Path to) throws IOException {
+        final PosixFileAttributeView source = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        if (source == null) {
+            return;
+        }
+
+        final PosixFileAttributes attributes = source.readAttributes();
+        final PosixFileAttributeView target = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        // ownership first, since changing it may clear permission bits
+        try {
+            target.setOwner(attributes.owner());
+        } catch (IOException e) {
+            // only a privileged user can give a file away
+        }
+        try {
+            target.setGroup(attributes.group());
+        } catch (IOException e) {
+            // only a group the user belongs to can be given
+        }
+        target.setPermissions(attributes.permissions());
+    }
+
+    private static void copy(InputStream in, OutputStream out, OutputStream content) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = in;
+             OutputStream output = out) {
+            int len = input.read(buffer);
+            while (len != -1) {
+                output.write(buffer, 0, len);
+                if (content != null) {
+                    content.write(buffer, 0, len);
+                }
+                len = input.read(buffer);
+            }
+        }
+    }
+
+    /**
+     * Keeps the standard output of an invocation open when the checksum
+     * stream written to it is closed.
+     */
+    private static class UnclosedOutputStream extends FilterOutputStream {
+
+        UnclosedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
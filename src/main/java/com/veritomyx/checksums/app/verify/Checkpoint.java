@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.verify;
+
+import com.veritomyx.checksums.Hex;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Results of files already verified, appended to a file as each is printed,
+ * so that an interrupted run can skip them when restarted. Each line holds a
+ * file name, its result and its digests, separated by tabs; a line left
+ * incomplete by a killed process is ignored and then removed. File names
+ * can't contain tabs or line breaks.
+ */
+class Checkpoint implements Closeable {
+
+    private final Map<String, VerifyApp.Outcome> recorded;
+    private final BufferedWriter writer;
+
+    private Checkpoint(Map<String, VerifyApp.Outcome> recorded, BufferedWriter writer) {
+        this.recorded = recorded;
+        this.writer = writer;
+    }
+
+    /**
+     * Opens a checkpoint to add to, creating it if it doesn't exist and
+     * removing any incomplete last line.
+     */
+    static Checkpoint open(Path path) throws IOException {
+        final Map<String, VerifyApp.Outcome> recorded = new HashMap<>();
+        final long complete = load(path, recorded);
+        if (Files.exists(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+        }
+
+        return new Checkpoint(recorded, Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+    }
+
+    /**
+     * Reads the results in a checkpoint, which may not exist yet.
+     *
+     * @return Length of the complete lines
+     */
+    static long load(Path path, Map<String, VerifyApp.Outcome> recorded) throws IOException {
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+
+        int complete = bytes.length;
+        while (complete > 0 && bytes[complete - 1] != '\n') {
+            complete--;
+        }
+
+        for (String line : new String(bytes, 0, complete, StandardCharsets.UTF_8).split("\n")) {
+            parse(line).ifPresent(outcome -> recorded.put(outcome.file, outcome));
+        }
+        return complete;
+    }
+
+    Optional<VerifyApp.Outcome> get(String file) {
+        return Optional.ofNullable(recorded.get(file));
+    }
+
+    void record(VerifyApp.Outcome outcome) throws IOException {
+        final StringBuilder line = new StringBuilder(outcome.file).append('\t').append(outcome.result);
+        for (Map.Entry<String, byte[]> digest : outcome.digests.entrySet()) {
+            line.append('\t').append(digest.getKey()).append('=').append(Hex.encode(digest.getValue()));
+        }
+
+        // the end of line marks the record complete
+        writer.write(line.append('\n').toString());
+        writer.flush();
+        recorded.put(outcome.file, outcome);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static Optional<VerifyApp.Outcome> parse(String line) {
+        final String[] fields = line.split("\t");
+        if (fields.length < 2) {
+            return Optional.empty();
+        }
+
+        try {
+            final VerifyApp.Result result = VerifyApp.Result.valueOf(fields[1]);
+            final Map<String, byte[]> digests = new LinkedHashMap<>();
+            for (int i = 2; i < fields.length; i++) {
+                final int equals = fields[i].indexOf('=');
+                digests.put(fields[i].substring(0, equals), Hex.decode(fields[i].substring(equals + 1)));
+            }
+            return Optional.of(new VerifyApp.Outcome(fields[0], result, Collections.unmodifiableMap(digests)));
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
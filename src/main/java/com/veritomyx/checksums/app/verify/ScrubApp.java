@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.verify;
+
+import com.veritomyx.checksums.ChecksumInputStream;
+import com.veritomyx.checksums.IoTuning;
+import com.veritomyx.checksums.TokenBucket;
+import com.veritomyx.checksums.app.AppContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies files without starving other users of the same disks. Reads are
+ * limited by token buckets for bytes and read calls per second, and the
+ * number of files read at once is adjusted additively up and halved when
+ * the average read takes longer than a target. Workers run at the lowest
+ * thread priority, and files are always read, never mapped. With a
+ * checkpoint, a restarted scrub skips the files already scrubbed.
+ */
+public class ScrubApp {
+
+    private final static int BUFFER_SIZE = IoTuning.DEFAULT_BUFFER_SIZE;
+
+    /**
+     * @param settings Settings naming the files and limits
+     * @param context  Context for the invocation
+     * @return Exit status, non-zero if any file is missing, has an invalid
+     * checksum or can't be read
+     * @throws IOException if an I/O error occurs reading the list of files
+     *                     or the checkpoint, or the scrub is interrupted
+     */
+    public static int run(ScrubSettings settings, AppContext context) throws IOException {
+        final ScrubApp app = new ScrubApp(settings, context);
+        try (Checkpoint checkpoint = settings.getCheckpoint() == null
+                ? null : Checkpoint.open(context.resolve(settings.getCheckpoint()))) {
+
+            app.checkpoint = checkpoint;
+            try {
+                for (String file : settings.getFiles()) {
+                    app.submit(file);
+                }
+
+                if (settings.getFilesFrom() != null) {
+                    try (BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(context.open(settings.getFilesFrom()), StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            if (!line.isEmpty()) {
+                                app.submit(line);
+                            }
+                        }
+                    }
+                }
+
+                app.workers.shutdown();
+                app.workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } finally {
+                // the checkpoint is closed next, so no worker may be left to record a result
+                app.stop();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted");
+        }
+
+        return app.summarize();
+    }
+
+    private final AppContext context;
+    private final TokenBucket bytes;
+    private final TokenBucket calls;
+    private final Concurrency concurrency;
+    private final ExecutorService workers;
+    private final Map<VerifyApp.Result, Integer> counts = new EnumMap<>(VerifyApp.Result.class);
+    private final AtomicLong scrubbed = new AtomicLong();
+    private final long start = System.nanoTime();
+    private Checkpoint checkpoint;
+    private int errors;
+    private int skipped;
+    private int status;
+
+    private ScrubApp(ScrubSettings settings, AppContext context) {
+        this.context = context;
+        // a second's worth may be read in a burst
+        this.bytes = settings.getRate() > 0 ? new TokenBucket(settings.getRate() * 1e6, settings.getRate() * 1e6) : null;
+        this.calls = settings.getIops() > 0 ? new TokenBucket(settings.getIops(), settings.getIops()) : null;
+        this.concurrency = new Concurrency(settings.getThreads(), (long) (settings.getTargetLatency() * 1e6));
+        this.workers = Executors.newFixedThreadPool(settings.getThreads(), runnable -> {
+            final Thread thread = new Thread(runnable, "scrub");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Interrupts the workers still scrubbing and waits for them to stop,
+     * even if interrupted itself, which is then passed on.
+     */
+    private void stop() {
+        workers.shutdownNow();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(String file) throws IOException, InterruptedException {
+        synchronized (this) {
+            if (checkpoint != null && checkpoint.get(file).isPresent()) {
+                skipped++;
+                return;
+            }
+        }
+
+        concurrency.acquire();
+        workers.execute(() -> {
+            try {
+                report(scrub(file));
+            } catch (IOException | NoSuchAlgorithmException | RuntimeException e) {
+                // a file interrupted by stopping is left for the next scrub
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                synchronized (this) {
+                    context.getErr().println(file + ": ERROR " + e);
+                    errors++;
+                    status = 1;
+                }
+            } finally {
+                concurrency.release();
+            }
+        });
+    }
+
+    private VerifyApp.Outcome scrub(String file) throws NoSuchAlgorithmException, IOException {
+        if (calls != null) {
+            calls.acquire(1);
+        }
+
+        final ChecksumInputStream stream = new ChecksumInputStream(new BufferedInputStream(
+                new ThrottledInputStream(Files.newInputStream(context.resolve(file))), BUFFER_SIZE));
+        final VerifyApp.Result result = VerifyApp.verify(stream);
+        return new VerifyApp.Outcome(file, result, stream.getDigests());
+    }
+
+    private synchronized void report(VerifyApp.Outcome outcome) throws IOException {
+        counts.merge(outcome.result, 1, Integer::sum);
+        if (outcome.result != VerifyApp.Result.OK) {
+            context.getOut().println(outcome.file + ": " + outcome.result);
+            context.getOut().flush();
+            status = 1;
+        }
+
+        if (checkpoint != null) {
+            checkpoint.record(outcome);
+        }
+    }
+
+    private synchronized int summarize() {
+        context.getOut().flush();
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        context.getErr().printf("%d OK, %d MISSING, %d INVALID, %d ERROR, %d already scrubbed; "
+                        + "%.1f MB in %.1f s, finishing with %d files at once%n",
+                counts.getOrDefault(VerifyApp.Result.OK, 0), counts.getOrDefault(VerifyApp.Result.MISSING, 0),
+                counts.getOrDefault(VerifyApp.Result.INVALID, 0), errors, skipped,
+                scrubbed.get() / 1e6, seconds, concurrency.getLimit());
+        context.getErr().flush();
+        return status;
+    }
+
+    /**
+     * Charges each read call and the bytes it returns to the buckets, and
+     * reports how long the read itself took. The end of the file is
+     * remembered, as pushed back bytes make the checksum stream ask again.
+     */
+    private class ThrottledInputStream extends FilterInputStream {
+
+        private boolean ended;
+
+        ThrottledInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (ended) {
+                return -1;
+            }
+            if (calls != null) {
+                calls.acquire(1);
+            }
+
+            final long begin = System.nanoTime();
+            final int count = in.read(b, off, len);
+            concurrency.sample(System.nanoTime() - begin);
+
+            if (count == -1) {
+                ended = true;
+            } else if (count > 0) {
+                scrubbed.addAndGet(count);
+                if (bytes != null) {
+                    bytes.acquire(count);
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Number of files read at once, raised by one after each window of
+     * reads whose average latency is within the target, and halved after a
+     * window above it.
+     */
+    private static class Concurrency {
+
+        private final int max;
+        private final long target;
+        private int limit;
+        private int active;
+        private int samples;
+        private double latency;
+
+        Concurrency(int max, long target) {
+            this.max = Math.max(1, max);
+            this.target = target;
+            this.limit = 1;
+        }
+
+        synchronized void acquire() throws InterruptedException {
+            while (active >= limit) {
+                wait();
+            }
+            active++;
+        }
+
+        synchronized void release() {
+            active--;
+            notifyAll();
+        }
+
+        synchronized void sample(long nanos) {
+            latency = samples == 0 ? nanos : 0.8 * latency + 0.2 * nanos;
+            if (++samples < 4 * limit) {
+                return;
+            }
+
+            samples = 0;
+            if (latency > target) {
+                limit = Math.max(1, limit / 2);
+            } else if (limit < max) {
+                limit++;
+                notifyAll();
+            }
+        }
+
+        synchronized int getLimit() {
+            return limit;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.verify;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.veritomyx.checksums.app.AtLeastOne;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Parameters(commandDescription = "Verifies files in the background at a limited rate, backing off when reads "
+        + "slow down, and prints only the files with problems")
+public class ScrubSettings {
+
+    @Parameter(description = "List of files to verify")
+    private List<String> files = new ArrayList<>();
+
+    @Parameter(names = "--files-from", description = "File listing further files, one per line, or \"-\" for standard input")
+    private String filesFrom;
+
+    @Parameter(names = "--rate", description = "Most MB read per second, or 0 for no limit")
+    private double rate = 50;
+
+    @Parameter(names = "--iops", description = "Most read calls per second, or 0 for no limit")
+    private int iops = 0;
+
+    @Parameter(names = "--threads", validateWith = AtLeastOne.class, description = "Most files read at once")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = "--target-latency", description = "Milliseconds a read may take on average before fewer "
+            + "files are read at once")
+    private double targetLatency = 20;
+
+    @Parameter(names = "--checkpoint", description = "File recording each file scrubbed, so that a restarted "
+            + "scrub skips them; remove it to start the next pass")
+    private String checkpoint;
+
+    @Parameter(names = "--help", help = true, description = "Print usage")
+    private boolean help;
+
+    public List<String> getFiles() {
+        return files;
+    }
+
+    public String getFilesFrom() {
+        return filesFrom;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public int getIops() {
+        return iops;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public double getTargetLatency() {
+        return targetLatency;
+    }
+
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public boolean getHelp() {
+        return help;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.verify;
+
+import com.veritomyx.checksums.app.AppContext;
+import com.veritomyx.checksums.app.Checksum;
+import com.veritomyx.checksums.app.Digests;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coordinates a verification split across worker processes. The files are
+ * listed once in the state directory, and each worker runs verify on its
+ * {@link Shard} of the list with its own checkpoint there. Once all have
+ * exited, their checkpoints are merged into a report in the order of the
+ * list. Running again with the same files, state directory and number of
+ * workers only verifies the files that have no result yet or couldn't be
+ * read, so a sweep that was killed resumes where it stopped. Workers on
+ * other machines sharing the file system can be started by hand with the
+ * same verify options.
+ */
+public class SweepApp {
+
+    /**
+     * @param settings Settings naming the files and state directory
+     * @param context  Context for the invocation
+     * @return Exit status, non-zero if any file is missing or has an invalid
+     * checksum, couldn't be read, or was left unverified by a worker that failed
+     * @throws IOException if an I/O error occurs, or the sweep is interrupted
+     */
+    public static int run(SweepSettings settings, AppContext context) throws IOException {
+        final Path state = context.resolve(settings.getState());
+        Files.createDirectories(state);
+
+        final Path list = state.resolve("files.txt");
+        writeList(settings, context, list);
+
+        final int count = settings.getWorkers();
+        final List<Process> workers = new ArrayList<>();
+        // workers outliving an interrupted sweep would race the next one
+        final Thread stopWorkers = new Thread(() -> workers.forEach(Process::destroy));
+        Runtime.getRuntime().addShutdownHook(stopWorkers);
+        try {
+            for (int i = 0; i < count; i++) {
+                workers.add(start(settings, context, list, state, new Shard(i, count)));
+            }
+            for (Process worker : workers) {
+                worker.waitFor();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted");
+        } finally {
+            workers.forEach(Process::destroy);
+            Runtime.getRuntime().removeShutdownHook(stopWorkers);
+        }
+
+        final Map<String, VerifyApp.Outcome> outcomes = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Checkpoint.load(checkpoint(state, new Shard(i, count)), outcomes);
+        }
+
+        return report(settings, context, list, outcomes);
+    }
+
+    /**
+     * Lists the files to verify, unless resuming a sweep of the same list.
+     * The checkpoints in the state directory belong to the list already
+     * there, so a different one is refused rather than replacing it.
+     */
+    private static void writeList(SweepSettings settings, AppContext context, Path list) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            for (String file : settings.getFiles()) {
+                writer.write(file);
+                writer.newLine();
+            }
+
+            if (settings.getFilesFrom() != null) {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(context.open(settings.getFilesFrom()), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.isEmpty()) {
+                            writer.write(line);
+                            writer.newLine();
+                        }
+                    }
+                }
+            }
+        }
+
+        if (!Files.exists(list)) {
+            Files.write(list, bytes.toByteArray());
+        } else if (!Arrays.equals(Files.readAllBytes(list), bytes.toByteArray())) {
+            throw new IOException("state directory holds a sweep of other files, so can't be resumed with these: "
+                    + list.getParent());
+        }
+    }
+
+    private static Process start(SweepSettings settings, AppContext context, Path list, Path state, Shard shard)
+            throws IOException {
+
+        final List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                Checksum.class.getName(), "verify",
+                "--files-from", list.toString(),
+                "--shard", shard.toString(),
+                "--checkpoint", checkpoint(state, shard).toString(),
+                "--io", settings.getIo().name()));
+        if (settings.getThreads() != null) {
+            command.add("--threads");
+            command.add(settings.getThreads().toString());
+        }
+        for (String digest : settings.getDigests()) {
+            command.add("--digest");
+            command.add(digest);
+        }
+
+        final Path log = state.resolve("shard-" + shard.getIndex() + "-of-" + shard.getCount() + ".log");
+        return new ProcessBuilder(command)
+                .directory(context.getWorkingDirectory().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()))
+                .start();
+    }
+
+    private static Path checkpoint(Path state, Shard shard) {
+        return state.resolve("shard-" + shard.getIndex() + "-of-" + shard.getCount() + ".checkpoint");
+    }
+
+    private static int report(SweepSettings settings, AppContext context, Path list,
+                              Map<String, VerifyApp.Outcome> outcomes) throws IOException {
+
+        final Map<VerifyApp.Result, Integer> counts = new EnumMap<>(VerifyApp.Result.class);
+        int unverified = 0;
+        int status = 0;
+        try (BufferedReader reader = Files.newBufferedReader(list, StandardCharsets.UTF_8)) {
+            String file;
+            while ((file = reader.readLine()) != null) {
+                final VerifyApp.Outcome outcome = outcomes.get(file);
+                if (outcome == null) {
+                    context.getOut().println(file + ": UNVERIFIED");
+                    unverified++;
+                    status = 1;
+                    continue;
+                }
+
+                context.getOut().println(file + ": " + outcome.result);
+                Digests.print(context.getOut(), file, outcome.digests, settings.getDigests());
+                counts.merge(outcome.result, 1, Integer::sum);
+                if (outcome.result != VerifyApp.Result.OK) {
+                    status = 1;
+                }
+            }
+        }
+        context.getOut().flush();
+
+        context.getErr().printf("%d OK, %d MISSING, %d INVALID, %d ERROR, %d UNVERIFIED%n",
+                counts.getOrDefault(VerifyApp.Result.OK, 0), counts.getOrDefault(VerifyApp.Result.MISSING, 0),
+                counts.getOrDefault(VerifyApp.Result.INVALID, 0), counts.getOrDefault(VerifyApp.Result.ERROR, 0),
+                unverified);
+        if (unverified > 0 || counts.containsKey(VerifyApp.Result.ERROR)) {
+            context.getErr().println("See the worker logs in " + list.getParent() + ", then run again to resume");
+        }
+        context.getErr().flush();
+
+        return status;
+    }
+}
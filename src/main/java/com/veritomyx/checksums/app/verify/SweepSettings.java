@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.verify;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Parameters(commandDescription = "Verifies files with several worker processes, each taking a shard of them, "
+        + "and prints one merged report; rerun with the same state directory to resume")
+public class SweepSettings {
+
+    @Parameter(description = "List of files to verify")
+    private List<String> files = new ArrayList<>();
+
+    @Parameter(names = "--files-from", description = "File listing further files, one per line, or \"-\" for standard input")
+    private String filesFrom;
+
+    @Parameter(names = "--state", required = true, description = "Directory for the file list, checkpoints and logs "
+            + "of the workers")
+    private String state;
+
+    @Parameter(names = "--workers", description = "Number of worker processes")
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = "--digest", description = "Additional digest to calculate in the same pass, "
+            + "such as SHA-256 or CRC32C; may be repeated")
+    private List<String> digests = new ArrayList<>();
+
+    @Parameter(names = "--io", description = "How each worker reads files, as for verify")
+    private VerifySettings.Io io = VerifySettings.Io.AUTO;
+
+    @Parameter(names = "--threads", description = "Number of files each worker reads at once with --io CHANNEL or ASYNC")
+    private Integer threads;
+
+    @Parameter(names = "--help", help = true, description = "Print usage")
+    private boolean help;
+
+    public List<String> getFiles() {
+        return files;
+    }
+
+    public String getFilesFrom() {
+        return filesFrom;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public List<String> getDigests() {
+        return digests;
+    }
+
+    public VerifySettings.Io getIo() {
+        return io;
+    }
+
+    public Integer getThreads() {
+        return threads;
+    }
+
+    public boolean getHelp() {
+        return help;
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.verify;
+
+import com.veritomyx.checksums.AsyncChannelReadBackend;
+import com.veritomyx.checksums.ChannelReadBackend;
+import com.veritomyx.checksums.ChecksumInputStream;
+import com.veritomyx.checksums.ContentChunker;
+import com.veritomyx.checksums.DedupIndex;
+import com.veritomyx.checksums.InvalidChecksumException;
+import com.veritomyx.checksums.IoTuning;
+import com.veritomyx.checksums.MissingChecksumException;
+import com.veritomyx.checksums.ReadBackend;
+import com.veritomyx.checksums.SegmentIndex;
+import com.veritomyx.checksums.app.AppContext;
+import com.veritomyx.checksums.app.Digests;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Verifies files, either one after another or, with a {@link ReadBackend},
+ * reading small files whole, many at once, and verifying them with a pool
+ * of threads, while results are still printed in the order the files were
+ * given. Unless told otherwise, {@link IoTuning} decides how many files to
+ * read at once and how to read each. A file ending with a
+ * {@link SegmentIndex} instead of a checksum is verified by its segments,
+ * several at once. A file that can't be read is reported as an error and
+ * the rest are still verified.
+ */
+public class VerifyApp {
+
+    public enum Result { OK, MISSING, INVALID, ERROR }
+
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    // largest file read whole by a backend; larger ones are streamed
+    private final static int BATCH_FILE_SIZE = 256 * 1024;
+
+    /**
+     * Verifies files, printing one line per file with its result followed
+     * by any additional digests requested, which are not calculated for a
+     * file verified by its segments. With a dedup index, the chunks of each
+     * file read without finding an invalid checksum, including one that has
+     * no checksum, are recorded in the same pass. With a shard, only the
+     * files in it are verified, and with a checkpoint, the results of files
+     * it records are printed without verifying them again, except for
+     * errors, which are tried again.
+     *
+     * @param settings Settings naming the files, where "-" means standard input
+     * @param context  Context for the invocation
+     * @return Exit status, non-zero if any file is missing, has an invalid checksum or can't be read
+     * @throws NoSuchAlgorithmException if SHA-1 or an additional digest is not found
+     * @throws IOException              if an I/O error occurs
+     */
+    public static int run(VerifySettings settings, AppContext context) throws NoSuchAlgorithmException, IOException {
+        final int threads = threads(settings, context);
+        try (DedupIndex index = settings.getDedupIndex() == null
+                ? null : DedupIndex.open(context.resolve(settings.getDedupIndex()));
+             Checkpoint checkpoint = settings.getCheckpoint() == null
+                     ? null : Checkpoint.open(context.resolve(settings.getCheckpoint()));
+             ReadBackend backend = backend(settings.getIo(), threads, context)) {
+
+            final VerifyApp app = new VerifyApp(settings, context, index, checkpoint, backend, threads);
+            try {
+                for (String file : settings.getFiles()) {
+                    app.submit(file);
+                }
+
+                if (settings.getFilesFrom() != null) {
+                    try (BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(context.open(settings.getFilesFrom()), StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            if (!line.isEmpty()) {
+                                app.submit(line);
+                            }
+                        }
+                    }
+                }
+
+                while (!app.window.isEmpty()) {
+                    app.printNext();
+                }
+            } finally {
+                if (app.verifiers != null && !context.getVerifiers().isPresent()) {
+                    app.verifiers.shutdownNow();
+                }
+            }
+
+            context.getOut().flush();
+            return app.status;
+        }
+    }
+
+    /**
+     * @return Number of files read at once, as given or tuned for the device
+     * of the first file named, or of the working directory
+     */
+    private static int threads(VerifySettings settings, AppContext context) {
+        if (settings.getThreads() != null) {
+            return settings.getThreads();
+        }
+
+        final String first = settings.getFiles().stream().filter(file -> !file.equals("-")).findFirst().orElse(".");
+        return IoTuning.forPath(context.resolve(first)).getParallelism();
+    }
+
+    /**
+     * @return A backend reading on the pool shared by the context, if any,
+     * or on a pool of its own
+     */
+    private static ReadBackend backend(VerifySettings.Io io, int threads, AppContext context) {
+        final ExecutorService readers = context.getReaders().orElse(null);
+        switch (io) {
+            case AUTO:
+                // as CHANNEL, unless files are read one at a time anyway
+                return threads <= 1 ? null : backend(VerifySettings.Io.CHANNEL, threads, context);
+            case CHANNEL:
+                return readers == null ? new ChannelReadBackend(threads) : new ChannelReadBackend(readers);
+            case ASYNC:
+                return readers == null ? new AsyncChannelReadBackend(threads) : new AsyncChannelReadBackend(readers);
+            default:
+                return null;
+        }
+    }
+
+    private final VerifySettings settings;
+    private final AppContext context;
+    private final DedupIndex index;
+    private final Checkpoint checkpoint;
+    private final ReadBackend backend;
+    private final ExecutorService verifiers;
+    private final Deque<CompletableFuture<Outcome>> window = new ArrayDeque<>();
+    private final int windowSize;
+    private final int threads;
+    private int status;
+
+    private VerifyApp(VerifySettings settings, AppContext context, DedupIndex index, Checkpoint checkpoint,
+                      ReadBackend backend, int threads) {
+        this.settings = settings;
+        this.context = context;
+        this.index = index;
+        this.checkpoint = checkpoint;
+        this.backend = backend;
+        this.verifiers = backend == null ? null : context.getVerifiers().orElseGet(
+                () -> Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+        // bounds the content held in memory to a few files per read in flight
+        this.windowSize = backend == null ? 1 : 2 * threads;
+        this.threads = threads;
+    }
+
+    private void submit(String file) throws NoSuchAlgorithmException, IOException {
+        if (settings.getShard() != null && !settings.getShard().contains(file)) {
+            return;
+        }
+
+        if (window.size() >= windowSize) {
+            printNext();
+        }
+
+        final Optional<Outcome> recorded = checkpoint == null ? Optional.empty() : checkpoint.get(file)
+                .filter(outcome -> outcome.result != Result.ERROR);
+        if (recorded.isPresent()) {
+            window.add(CompletableFuture.completedFuture(recorded.get()));
+            return;
+        }
+
+        if (backend == null || file.equals("-")) {
+            Outcome outcome;
+            try {
+                outcome = check(file);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                outcome = error(file, e);
+            }
+            window.add(CompletableFuture.completedFuture(outcome));
+            return;
+        }
+
+        window.add(backend.read(context.resolve(file), BATCH_FILE_SIZE).thenApplyAsync(content -> {
+            try {
+                return check(file, content);
+            } catch (NoSuchAlgorithmException | IOException e) {
+                throw new CompletionException(e);
+            }
+        }, verifiers).exceptionally(e -> {
+            final Throwable cause = cause(e);
+            if (cause instanceof IOException && !(cause instanceof InterruptedIOException)) {
+                return error(file, (IOException) cause);
+            }
+            throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+        }));
+    }
+
+    /**
+     * @return The outcome of a file that couldn't be read, after saying why
+     */
+    private Outcome error(String file, IOException e) {
+        context.getErr().println(file + ": " + e);
+        return new Outcome(file, Result.ERROR, Collections.emptyMap());
+    }
+
+    private static Throwable cause(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException
+                || e instanceof UncheckedIOException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    private void printNext() throws NoSuchAlgorithmException, IOException {
+        final Outcome outcome;
+        try {
+            outcome = window.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted");
+        } catch (ExecutionException e) {
+            final Throwable cause = cause(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof NoSuchAlgorithmException) {
+                throw (NoSuchAlgorithmException) cause;
+            }
+            throw new IOException(cause);
+        }
+
+        context.getOut().println(outcome.file + ": " + outcome.result);
+        Digests.print(context.getOut(), outcome.file, outcome.digests, settings.getDigests());
+        if (outcome.result != Result.OK) {
+            status = 1;
+        }
+
+        // an outcome replayed from the checkpoint is already in it
+        if (checkpoint != null && checkpoint.get(outcome.file).orElse(null) != outcome) {
+            checkpoint.record(outcome);
+        }
+    }
+
+    private Outcome check(String file, Optional<ByteBuffer> content) throws NoSuchAlgorithmException, IOException {
+        if (!content.isPresent()) {
+            return check(file);
+        }
+
+        // the end of a small file is already in memory, so the file is only read again for its segments
+        final ByteBuffer buffer = content.get();
+        final Optional<Outcome> segmented = SegmentIndex.mayEndWithIndex(buffer)
+                ? checkSegments(file) : Optional.empty();
+        return segmented.isPresent() ? segmented.get() : check(file, new ByteArrayInputStream(buffer.array(),
+                buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+    }
+
+    private Outcome check(String file) throws NoSuchAlgorithmException, IOException {
+        final Optional<Outcome> segmented = checkSegments(file);
+        return segmented.isPresent() ? segmented.get() : check(file, open(file));
+    }
+
+    /**
+     * Verifies a file by the segments in its index, or returns empty if it
+     * doesn't end with one. Only the end of the file is read to find out,
+     * so a file with an index is never hashed whole.
+     */
+    private Optional<Outcome> checkSegments(String file) throws NoSuchAlgorithmException, IOException {
+        if (file.equals("-")) {
+            return Optional.empty();
+        }
+
+        final Path path = context.resolve(file);
+        final Optional<SegmentIndex> index;
+        try {
+            index = SegmentIndex.read(path);
+        } catch (InvalidChecksumException e) {
+            return Optional.of(new Outcome(file, Result.INVALID, Collections.emptyMap()));
+        }
+
+        if (!index.isPresent()) {
+            return Optional.empty();
+        }
+        final List<Integer> invalid = context.getReaders().isPresent()
+                ? index.get().verify(path, context.getReaders().get()) : index.get().verify(path, threads);
+        final Result result = invalid.isEmpty() ? Result.OK : Result.INVALID;
+        return Optional.of(new Outcome(file, result, Collections.emptyMap()));
+    }
+
+    private InputStream open(String file) throws IOException {
+        return file.equals("-") ? new BufferedInputStream(context.getIn()) : IoTuning.open(context.resolve(file));
+    }
+
+    private Outcome check(String file, InputStream in) throws NoSuchAlgorithmException, IOException {
+        final ChecksumInputStream stream = new ChecksumInputStream(in, settings.getDigests());
+        final DedupIndex.Recorder recorder = index == null ? null : index.recorder(context.resolve(file).toString());
+        final ContentChunker chunker = recorder == null ? null : new ContentChunker(recorder);
+
+        final Result result = verify(stream, chunker);
+        if (chunker != null && result != Result.INVALID) {
+            chunker.close();
+            recorder.commit(stream.getDigests().get("SHA-1"));
+        }
+
+        return new Outcome(file, result, stream.getDigests());
+    }
+
+    static class Outcome {
+        final String file;
+        final Result result;
+        final Map<String, byte[]> digests;
+
+        Outcome(String file, Result result, Map<String, byte[]> digests) {
+            this.file = file;
+            this.result = result;
+            this.digests = digests;
+        }
+    }
+
+    /**
+     * Reads a stream to its end and checks its checksum. The stream is closed.
+     *
+     * @param in Unbuffered input stream
+     * @return Result of the verification
+     * @throws NoSuchAlgorithmException if SHA-1 is not found
+     * @throws IOException              if an I/O error occurs
+     */
+    public static Result verify(InputStream in) throws NoSuchAlgorithmException, IOException {
+        return verify(new ChecksumInputStream(new BufferedInputStream(in)));
+    }
+
+    /**
+     * Reads a checksum stream to its end and checks its checksum. The stream
+     * is closed, after which its digests are available.
+     *
+     * @param stream Checksum input stream
+     * @return Result of the verification
+     * @throws IOException if an I/O error occurs
+     */
+    public static Result verify(ChecksumInputStream stream) throws IOException {
+        return verify(stream, null);
+    }
+
+    /**
+     * Reads a checksum stream to its end and checks its checksum, writing
+     * the content to another stream as it goes. The checksum stream is
+     * closed, after which its digests are available; the other is not.
+     *
+     * @param stream  Checksum input stream
+     * @param content Stream that receives the content, or null
+     * @return Result of the verification
+     * @throws IOException if an I/O error occurs
+     */
+    public static Result verify(ChecksumInputStream stream, OutputStream content) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = stream) {
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                if (content != null) {
+                    content.write(buffer, 0, len);
+                }
+            }
+        } catch (MissingChecksumException e) {
+            return Result.MISSING;
+        } catch (InvalidChecksumException e) {
+            return Result.INVALID;
+        }
+
+        return Result.OK;
+    }
+}
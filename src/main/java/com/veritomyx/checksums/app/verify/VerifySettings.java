@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.verify;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Parameters(commandDescription = "Verifies the checksums of files")
+public class VerifySettings {
+
+    public enum Io { AUTO, STREAM, CHANNEL, ASYNC }
+
+    @Parameter(description = "List of files to verify")
+    private List<String> files = new ArrayList<>();
+
+    @Parameter(names = "--files-from", description = "File listing further files, one per line, or \"-\" for standard input")
+    private String filesFrom;
+
+    @Parameter(names = "--shard", converter = Shard.Converter.class, description = "Only verify the files in part i "
+            + "of N, from 0 to N - 1, chosen by a hash of their names")
+    private Shard shard;
+
+    @Parameter(names = "--checkpoint", description = "File recording each result, from which a restarted run "
+            + "takes the results of files already verified")
+    private String checkpoint;
+
+    @Parameter(names = "--digest", description = "Additional digest to calculate in the same pass, "
+            + "such as SHA-256 or CRC32C; may be repeated")
+    private List<String> digests = new ArrayList<>();
+
+    @Parameter(names = "--dedup-index", description = "Directory of an index to record content-defined chunks in, "
+            + "for dedup-report")
+    private String dedupIndex;
+
+    @Parameter(names = "--io", description = "How files are read: one after another as streams, or whole "
+            + "and many at once with blocking (CHANNEL) or asynchronous (ASYNC) file channels; files too large "
+            + "to read whole are still streamed. AUTO uses CHANNEL unless tuned to read one file at a time")
+    private Io io = Io.AUTO;
+
+    @Parameter(names = "--threads", description = "Number of files read at once with --io CHANNEL or ASYNC; "
+            + "by default, as tuned for the device of the first file")
+    private Integer threads;
+
+    @Parameter(names = "--help", help = true, description = "Print usage")
+    private boolean help;
+
+    public List<String> getFiles() {
+        return files;
+    }
+
+    public String getFilesFrom() {
+        return filesFrom;
+    }
+
+    public Shard getShard() {
+        return shard;
+    }
+
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public List<String> getDigests() {
+        return digests;
+    }
+
+    public String getDedupIndex() {
+        return dedupIndex;
+    }
+
+    public Io getIo() {
+        return io;
+    }
+
+    public Integer getThreads() {
+        return threads;
+    }
+
+    public boolean getHelp() {
+        return help;
+    }
+}
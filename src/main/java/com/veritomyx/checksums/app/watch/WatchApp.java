@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.watch;
+
+import com.veritomyx.checksums.AppendedContentException;
+import com.veritomyx.checksums.ChecksumTrailer;
+import com.veritomyx.checksums.InvalidChecksumException;
+import com.veritomyx.checksums.app.AppContext;
+import com.veritomyx.checksums.app.sign.SignApp;
+import com.veritomyx.checksums.app.verify.VerifyApp;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signs or verifies files as they are written to watched directories.
+ *
+ * <p>The watch service only reports that files were created or modified, not
+ * that they were closed, so a file is processed once it has gone a quiet
+ * period without further events. Files are handed to a fixed pool of workers
+ * through a bounded queue; when it is full the watcher processes the file
+ * itself, which slows down consumption of events rather than buffering
+ * without limit. If events are lost to an overflow, the directory is
+ * rescanned.</p>
+ *
+ * <p>When signing, a file that already has a checksum line is never signed
+ * again: one ending with it is verified instead, and one with content
+ * after it is reported as APPENDED and left alone. Signing replaces a file,
+ * so producers must write each file in one go, without pausing for longer
+ * than the quiet period, and must not reopen it afterwards; writes through
+ * a handle still open after signing go to the replaced file and are lost.
+ * Writing under another name and renaming into place avoids both.</p>
+ */
+public class WatchApp {
+
+    /**
+     * Watches directories until the process is stopped, printing a result
+     * line for each file as it completes.
+     *
+     * @param settings Settings for the watcher
+     * @param context  Context for the invocation
+     * @return Exit status, only if watching fails
+     * @throws IOException if an I/O error occurs registering the directories
+     */
+    public static int run(WatchSettings settings, AppContext context) throws IOException {
+        final WatchApp app = new WatchApp(settings, context.getOut());
+        try (WatchService watcher = context.getWorkingDirectory().getFileSystem().newWatchService()) {
+            for (String directory : settings.getDirectories()) {
+                context.resolve(directory).register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+            app.watch(watcher);
+        } catch (ClosedWatchServiceException e) {
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            app.workers.shutdown();
+        }
+
+        return 0;
+    }
+
+    private final WatchSettings.Mode mode;
+    private final long quietPeriod;
+    private final PrintStream out;
+    private final ThreadPoolExecutor workers;
+
+    // files with events not yet quiet for long enough, with the time of their last event
+    private final Map<Path, Long> pending = new HashMap<>();
+
+    // modification times of files this watcher signed, so their own events are ignored
+    private final Map<Path, FileTime> signed = new ConcurrentHashMap<>();
+
+    private WatchApp(WatchSettings settings, PrintStream out) {
+        this.mode = settings.getMode();
+        this.quietPeriod = TimeUnit.MILLISECONDS.toNanos(settings.getQuietPeriod());
+        this.out = out;
+        this.workers = new ThreadPoolExecutor(settings.getThreads(), settings.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(settings.getQueue()), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private void watch(WatchService watcher) throws InterruptedException, IOException {
+        final long pollMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(quietPeriod) / 4);
+        while (true) {
+            final WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                final Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan(directory);
+                    } else {
+                        touch(directory.resolve((Path) event.context()));
+                    }
+                }
+                key.reset();
+            }
+
+            dispatchQuiet();
+        }
+    }
+
+    private void rescan(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                touch(file);
+            }
+        }
+    }
+
+    private void touch(Path file) {
+        if (!file.getFileName().toString().endsWith(SignApp.TEMP_SUFFIX)) {
+            pending.put(file, System.nanoTime());
+        }
+    }
+
+    private void dispatchQuiet() {
+        final long now = System.nanoTime();
+        final Iterator<Map.Entry<Path, Long>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Path, Long> entry = iterator.next();
+            if (now - entry.getValue() >= quietPeriod) {
+                iterator.remove();
+                final Path file = entry.getKey();
+                workers.execute(() -> process(file));
+            }
+        }
+    }
+
+    private void process(Path file) {
+        String result;
+        try {
+            if (!Files.isRegularFile(file)) {
+                return;
+            }
+
+            if (mode == WatchSettings.Mode.VERIFY) {
+                result = VerifyApp.verify(Files.newInputStream(file)).toString();
+            } else {
+                final FileTime modified = Files.getLastModifiedTime(file);
+                if (modified.equals(signed.remove(file))) {
+                    return;
+                }
+
+                if (ChecksumTrailer.read(file).isPresent()) {
+                    // signed by its producer, or by this watcher and changed since
+                    result = VerifyApp.verify(Files.newInputStream(file)).toString();
+                } else {
+                    SignApp.sign(file);
+                    signed.put(file, Files.getLastModifiedTime(file));
+                    result = "SIGNED";
+                }
+            }
+        } catch (InvalidChecksumException e) {
+            result = "INVALID";
+        } catch (AppendedContentException e) {
+            result = "APPENDED";
+        } catch (IOException | NoSuchAlgorithmException e) {
+            result = "ERROR " + e;
+        }
+
+        synchronized (out) {
+            out.println(file + ": " + result);
+            out.flush();
+        }
+    }
+}
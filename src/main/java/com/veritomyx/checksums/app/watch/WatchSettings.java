@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.watch;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.veritomyx.checksums.app.AtLeastOne;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Parameters(commandDescription = "Signs or verifies files as they arrive in directories, until stopped")
+public class WatchSettings {
+
+    public enum Mode { SIGN, VERIFY }
+
+    @Parameter(description = "List of directories to watch")
+    private List<String> directories = new ArrayList<>();
+
+    @Parameter(names = "--mode", description = "Whether arriving files are signed or verified")
+    private Mode mode = Mode.VERIFY;
+
+    @Parameter(names = "--quiet-period", description = "Milliseconds without changes before a file is "
+            + "considered complete; producers must not pause for longer, nor reopen a file")
+    private long quietPeriod = 1000;
+
+    @Parameter(names = "--threads", validateWith = AtLeastOne.class, description = "Number of files processed "
+            + "concurrently")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = "--queue", validateWith = AtLeastOne.class, description = "Number of complete files waiting "
+            + "for a worker before the watcher processes files itself")
+    private int queue = 64;
+
+    @Parameter(names = "--help", help = true, description = "Print usage")
+    private boolean help;
+
+    public List<String> getDirectories() {
+        return directories;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getQuietPeriod() {
+        return quietPeriod;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueue() {
+        return queue;
+    }
+
+    public boolean getHelp() {
+        return help;
+    }
+}
@@ -42,8 +42,10 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
@@ -166,6 +168,27 @@ public class ChecksumInputStreamTest {
         }
     }
 
+    @Test
+    public void testDigests() throws URISyntaxException, IOException, NoSuchAlgorithmException {
+        Path path = Paths.get(getResourceUri("valid.txt"));
+        byte[] content = Arrays.copyOf(Files.readAllBytes(path), 43);
+
+        ChecksumInputStream stream = new ChecksumInputStream(new BufferedInputStream(Files.newInputStream(path)),
+                Arrays.asList("SHA-256"));
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        try (InputStream input = stream) {
+            byte[] buffer = new byte[5];
+            int len;
+            while ((len = input.read(buffer)) != -1) {
+                read.write(buffer, 0, len);
+            }
+        }
+
+        assertThat(read.toByteArray(), equalTo(content));
+        assertThat(stream.getDigests().keySet(), contains("SHA-1", "SHA-256"));
+        assertThat(stream.getDigests().get("SHA-256"), equalTo(MessageDigest.getInstance("SHA-256").digest(content)));
+    }
+
     private static URI getResourceUri(String filename) throws URISyntaxException {
         URL resourceUrl = ChecksumInputStreamTest.class.getResource(BASE_TEST_PATH + filename);
         assertThat(resourceUrl, not(nullValue()));
@@ -43,8 +43,10 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
@@ -240,6 +242,44 @@ public class ChecksumOutputStreamTest {
         assertThat(file.length(), equalTo(length));
     }
 
+    @Test
+    public void testDigests() throws IOException, NoSuchAlgorithmException {
+        byte[] content = "# header\n1234.5\t67.89\n".getBytes();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChecksumOutputStream stream = new ChecksumOutputStream(bytes, Arrays.asList("SHA-256", "SHA-1"));
+        try (OutputStream output = stream) {
+            output.write(content);
+        }
+
+        assertThat(stream.getDigests().keySet(), contains("SHA-1", "SHA-256"));
+        assertThat(stream.getDigests().get("SHA-256"), equalTo(MessageDigest.getInstance("SHA-256").digest(content)));
+        assertThat(new String(bytes.toByteArray()), equalTo(new String(content)
+                + "# checksum:" + Hex.encode(stream.getDigests().get("SHA-1")) + "\n"));
+    }
+
+    @Test
+    public void testIgnoredContent() throws IOException, NoSuchAlgorithmException {
+        // the line's content doesn't matter, only what follows it
+        String checksum = "# checksum:0d1a5a9ec7d3c7d1a62e4b4ad91d4b3e4a1e1cc0";
+
+        for (String rest : new String[] { "", "\n", "appended data\n" }) {
+            for (boolean bytewise : new boolean[] { false, true }) {
+                byte[] content = ("data\n" + checksum + rest).getBytes();
+                ChecksumOutputStream stream = new ChecksumOutputStream(new ByteArrayOutputStream());
+                if (bytewise) {
+                    for (byte b : content) {
+                        stream.write(b);
+                    }
+                } else {
+                    stream.write(content);
+                }
+
+                assertThat(rest, stream.hasIgnoredContent(), equalTo(rest.length() > 1));
+            }
+        }
+    }
+
     private static URI getResourceUri(String filename) throws URISyntaxException {
         URL resourceUrl = ChecksumInputStreamTest.class.getResource(BASE_TEST_PATH + filename);
         assertThat(resourceUrl, not(nullValue()));
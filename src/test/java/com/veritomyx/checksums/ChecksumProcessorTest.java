@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.Test;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ChecksumProcessorTest {
+
+    @Test
+    public void testRoundTrip() throws NoSuchAlgorithmException, IOException {
+        byte[] content = "# this is a header\n#\n1234.5\t67.89\n".getBytes();
+
+        Result signed = run(new ChecksumSigningProcessor(), content, new Random(0));
+        assertThat(signed.error, nullValue());
+        assertThat(signed.bytes, equalTo(ChecksumStreamPropertyTest.sign(content)));
+
+        Result verified = run(new ChecksumVerifyingProcessor(), signed.bytes, new Random(0));
+        assertThat(verified.error, nullValue());
+        assertThat(verified.bytes, equalTo(content));
+    }
+
+    @Test
+    public void testSignInvalid() throws NoSuchAlgorithmException {
+        byte[] content = "data\n# checksum:Ee7b9c561d5b1cbc2c37c71c5cc846a0713603ea\n".getBytes();
+
+        Result signed = run(new ChecksumSigningProcessor(), content, new Random(0));
+        assertThat(signed.error, instanceOf(InvalidChecksumException.class));
+    }
+
+    @Test
+    public void testVerifyMissing() throws NoSuchAlgorithmException {
+        Result verified = run(new ChecksumVerifyingProcessor(), "no checksum #\n".getBytes(), new Random(0));
+        assertThat(verified.error, instanceOf(MissingChecksumException.class));
+    }
+
+    @Test
+    public void testVerifyAgreesWithInputStream() throws NoSuchAlgorithmException {
+        for (int seed = 0; seed < 500; seed++) {
+            Random random = new Random(seed);
+            byte[] data = ChecksumStreamPropertyTest.randomContent(random, random.nextInt(300), true);
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            Class<?> expectedError = null;
+            try (InputStream stream = new ChecksumInputStream(new ByteArrayInputStream(data))) {
+                int value;
+                while ((value = stream.read()) != -1) {
+                    expected.write(value);
+                }
+            } catch (IOException e) {
+                expectedError = e.getClass();
+            }
+
+            Result verified = run(new ChecksumVerifyingProcessor(), data, random);
+            assertThat("seed " + seed, verified.error == null ? null : verified.error.getClass(),
+                    equalTo((Object) expectedError));
+            if (expectedError == null) {
+                assertThat("seed " + seed, verified.bytes, equalTo(expected.toByteArray()));
+            }
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws NoSuchAlgorithmException {
+        byte[] content = new byte[10000];
+        new Random(3).nextBytes(content);
+
+        ChunkPublisher publisher = new ChunkPublisher(content, new Random(3));
+        ChecksumSigningProcessor processor = new ChecksumSigningProcessor();
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        subscriber.subscription.request(2);
+        assertThat(subscriber.received, equalTo(2));
+        assertThat(publisher.requested, lessThanOrEqualTo(3L));
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertThat(subscriber.completed, equalTo(true));
+    }
+
+    private static Result run(Processor<ByteBuffer, ByteBuffer> processor, byte[] data, Random random) {
+        ChunkPublisher publisher = new ChunkPublisher(data, random);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+        while (!subscriber.completed && subscriber.error == null) {
+            subscriber.subscription.request(1);
+        }
+        return new Result(subscriber.bytes.toByteArray(), subscriber.error);
+    }
+
+    private static class Result {
+        private final byte[] bytes;
+        private final Throwable error;
+
+        Result(byte[] bytes, Throwable error) {
+            this.bytes = bytes;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Synchronously publishes data in random-sized chunks, only as requested.
+     */
+    private static class ChunkPublisher implements Publisher<ByteBuffer> {
+        private final byte[] data;
+        private final Random random;
+        private int offset;
+        private long requested;
+
+        ChunkPublisher(byte[] data, Random random) {
+            this.data = data;
+            this.random = random;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    requested += n;
+                    for (long i = 0; i < n && offset < data.length; i++) {
+                        int len = Math.min(data.length - offset, 1 + random.nextInt(100));
+                        subscriber.onNext(ByteBuffer.wrap(data, offset, len));
+                        offset += len;
+                    }
+                    if (offset == data.length) {
+                        offset++;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    offset = data.length + 1;
+                }
+            });
+        }
+    }
+
+    private static class CollectingSubscriber implements Subscriber<ByteBuffer> {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private Subscription subscription;
+        private int received;
+        private boolean completed;
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ByteBuffer buffer) {
+            received++;
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            bytes.write(chunk, 0, chunk.length);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
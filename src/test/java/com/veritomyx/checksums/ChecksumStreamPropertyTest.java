@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Differential tests of the checksum streams over generated content rich in
+ * '#', partial "# checksum:" prefixes and embedded trailers. The byte-at-a-time
+ * and bulk paths must agree on the bytes produced and on the exception thrown,
+ * however the data is split into reads and writes.
+ */
+public class ChecksumStreamPropertyTest {
+
+    private final static int ITERATIONS = 500;
+    private final static String[] TOKENS = {
+            "#", "#", "# ", "\n", " checksum", "# check", "# checksum", "# checksum:", "# t", "1234.5\t67.89",
+            "ee7b9c561d5b1cbc2", "##", " " };
+
+    @Test
+    public void testOutputPathsAgree() throws Exception {
+        for (int seed = 0; seed < ITERATIONS; seed++) {
+            Random random = new Random(seed);
+            byte[] data = randomContent(random, random.nextInt(300), true);
+
+            Outcome expected = writeBytewise(data);
+            Outcome actual = writeBulk(data, random);
+            assertThat("seed " + seed, actual, equalTo(expected));
+        }
+    }
+
+    @Test
+    public void testOutputSplitAtEveryBoundary() throws Exception {
+        for (int seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            byte[] data = randomContent(random, 80, true);
+            Outcome expected = writeBytewise(data);
+
+            for (int split = 0; split <= data.length; split++) {
+                Outcome actual = write(data, split);
+                assertThat("seed " + seed + ", split " + split, actual, equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    public void testInputPathsAgree() throws Exception {
+        for (int seed = 0; seed < ITERATIONS; seed++) {
+            Random random = new Random(seed);
+            byte[] data = randomContent(random, random.nextInt(300), true);
+
+            Outcome expected = readBytewise(new ByteArrayInputStream(data));
+            Outcome actual = readBulk(new ShortReadInputStream(data, random), random);
+            assertThat("seed " + seed, actual, equalTo(expected));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (int seed = 0; seed < ITERATIONS; seed++) {
+            Random random = new Random(seed);
+            byte[] content = randomContent(random, random.nextInt(300), false);
+            byte[] signed = sign(content);
+
+            Outcome bytewise = readBytewise(new ShortReadInputStream(signed, random));
+            Outcome bulk = readBulk(new ShortReadInputStream(signed, random), random);
+            assertThat("seed " + seed, bytewise, equalTo(new Outcome(content, null)));
+            assertThat("seed " + seed, bulk, equalTo(new Outcome(content, null)));
+        }
+    }
+
+    @Test
+    public void testInputSplitAtEveryBoundary() throws Exception {
+        for (int seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            byte[] content = randomContent(random, 40, false);
+            byte[] signed = sign(content);
+
+            for (int split = 0; split <= signed.length; split++) {
+                InputStream first = new SplitInputStream(signed, split);
+                InputStream second = new SplitInputStream(signed, split);
+                assertThat("seed " + seed + ", split " + split, readBytewise(first), equalTo(new Outcome(content, null)));
+                assertThat("seed " + seed + ", split " + split, readBulk(second, random),
+                        equalTo(new Outcome(content, null)));
+            }
+        }
+    }
+
+    @Test
+    public void testHashAtEnd() throws Exception {
+        byte[] data = "abc#".getBytes("US-ASCII");
+        assertThat(readBytewise(new ByteArrayInputStream(data)), equalTo(new Outcome(data, MissingChecksumException.class)));
+        assertThat(readBulk(new ByteArrayInputStream(data), new Random(0)),
+                equalTo(new Outcome(data, MissingChecksumException.class)));
+    }
+
+    /**
+     * Generates content from tokens likely to confuse the trailer detection.
+     * With {@code trailers}, valid, invalid and truncated trailers are mixed
+     * in; without, the content never contains "# checksum" and so signs and
+     * verifies cleanly.
+     */
+    static byte[] randomContent(Random random, int length, boolean trailers) throws NoSuchAlgorithmException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        while (bytes.size() < length) {
+            int choice = random.nextInt(10);
+            if (choice < 3) {
+                bytes.write(random.nextInt(256));
+            } else if (choice < 9 || !trailers) {
+                byte[] token = TOKENS[random.nextInt(TOKENS.length)].getBytes();
+                bytes.write(token, 0, token.length);
+            } else {
+                byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes.toByteArray());
+                if (random.nextBoolean()) {
+                    digest[random.nextInt(digest.length)] ^= 1;
+                }
+                byte[] trailer = ("# checksum:" + Hex.encode(digest) + "\n").getBytes();
+                bytes.write(trailer, 0, random.nextBoolean() ? trailer.length : random.nextInt(trailer.length));
+            }
+        }
+
+        byte[] content = bytes.toByteArray();
+        if (!trailers) {
+            while (indexOf(content, "# checksum".getBytes()) >= 0) {
+                content[indexOf(content, "# checksum".getBytes())] = 'x';
+            }
+        }
+        return content;
+    }
+
+    static byte[] sign(byte[] content) throws IOException, NoSuchAlgorithmException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream stream = new ChecksumOutputStream(bytes)) {
+            stream.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Outcome writeBytewise(byte[] data) throws NoSuchAlgorithmException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Class<?> exception = null;
+        try (OutputStream stream = new ChecksumOutputStream(bytes)) {
+            for (byte b : data) {
+                stream.write(b);
+            }
+        } catch (IOException e) {
+            exception = e.getClass();
+        }
+        return new Outcome(bytes.toByteArray(), exception);
+    }
+
+    private static Outcome writeBulk(byte[] data, Random random) throws NoSuchAlgorithmException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Class<?> exception = null;
+        try (OutputStream stream = new ChecksumOutputStream(bytes)) {
+            int offset = 0;
+            while (offset < data.length) {
+                int len = Math.min(data.length - offset, 1 + random.nextInt(64));
+                stream.write(data, offset, len);
+                offset += len;
+            }
+        } catch (IOException e) {
+            exception = e.getClass();
+        }
+        return new Outcome(bytes.toByteArray(), exception);
+    }
+
+    private static Outcome write(byte[] data, int split) throws NoSuchAlgorithmException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Class<?> exception = null;
+        try (OutputStream stream = new ChecksumOutputStream(bytes)) {
+            stream.write(data, 0, split);
+            stream.write(data, split, data.length - split);
+        } catch (IOException e) {
+            exception = e.getClass();
+        }
+        return new Outcome(bytes.toByteArray(), exception);
+    }
+
+    private static Outcome readBytewise(InputStream in) throws NoSuchAlgorithmException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Class<?> exception = null;
+        try (InputStream stream = new ChecksumInputStream(in)) {
+            int value;
+            while ((value = stream.read()) != -1) {
+                bytes.write(value);
+            }
+        } catch (IOException e) {
+            exception = e.getClass();
+        }
+        return new Outcome(bytes.toByteArray(), exception);
+    }
+
+    private static Outcome readBulk(InputStream in, Random random) throws NoSuchAlgorithmException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Class<?> exception = null;
+        try (InputStream stream = new ChecksumInputStream(in)) {
+            byte[] buffer = new byte[64];
+            int len;
+            while ((len = stream.read(buffer, 0, 1 + random.nextInt(buffer.length))) != -1) {
+                bytes.write(buffer, 0, len);
+            }
+        } catch (IOException e) {
+            exception = e.getClass();
+        }
+        return new Outcome(bytes.toByteArray(), exception);
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + pattern.length), pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Bytes produced by a stream and the class of any exception it threw.
+     */
+    private static class Outcome {
+        private final byte[] bytes;
+        private final Class<?> exception;
+
+        Outcome(byte[] bytes, Class<?> exception) {
+            this.bytes = bytes;
+            this.exception = exception;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Outcome)) {
+                return false;
+            }
+            Outcome other = (Outcome) o;
+            return Arrays.equals(bytes, other.bytes) && exception == other.exception;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public String toString() {
+            return "'" + new String(bytes) + "' " + (exception == null ? "OK" : exception.getSimpleName());
+        }
+    }
+
+    /**
+     * Returns a random number of bytes from each read, as a socket might.
+     */
+    private static class ShortReadInputStream extends ByteArrayInputStream {
+        private final Random random;
+
+        ShortReadInputStream(byte[] data, Random random) {
+            super(data);
+            this.random = random;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1 + random.nextInt(8)));
+        }
+    }
+
+    /**
+     * Returns the bytes before and after a split point in separate reads.
+     */
+    private static class SplitInputStream extends ByteArrayInputStream {
+        private final int split;
+
+        SplitInputStream(byte[] data, int split) {
+            super(data);
+            this.split = split;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            if (pos < split) {
+                len = Math.min(len, split - pos);
+            }
+            return super.read(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ChecksumTeeOutputStreamTest {
+
+    private final static String BASE_TEST_PATH = "/com/veritomyx/checksums/ChecksumTestFiles/";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void testSameAsSingleOutput() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[100000];
+        new Random(42).nextBytes(data);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (OutputStream stream = new ChecksumOutputStream(expected)) {
+            stream.write(data);
+        }
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        ByteArrayOutputStream third = new ByteArrayOutputStream();
+        try (OutputStream stream = new ChecksumTeeOutputStream(first, second, third)) {
+            stream.write(data, 0, 10);
+            stream.write(data[10]);
+            stream.write(data, 11, data.length - 11);
+        }
+
+        assertThat(first.toByteArray(), equalTo(expected.toByteArray()));
+        assertThat(second.toByteArray(), equalTo(expected.toByteArray()));
+        assertThat(third.toByteArray(), equalTo(expected.toByteArray()));
+    }
+
+    @Test
+    public void testSlowOutput() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[50000];
+        new Random(7).nextBytes(data);
+
+        ByteArrayOutputStream fast = new ByteArrayOutputStream();
+        ByteArrayOutputStream slow = new ByteArrayOutputStream();
+        OutputStream slowStream = new FilterOutputStream(slow) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                out.write(b, off, len);
+            }
+        };
+
+        try (OutputStream stream = new ChecksumTeeOutputStream(Arrays.asList(fast, slowStream), 1)) {
+            for (int i = 0; i < data.length; i += 1000) {
+                stream.write(data, i, 1000);
+            }
+        }
+
+        assertThat(slow.toByteArray(), equalTo(fast.toByteArray()));
+        assertThat(fast.size(), equalTo(data.length + 52));
+    }
+
+    @Test
+    public void testFailingOutput() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[100];
+        new Random(3).nextBytes(data);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (OutputStream stream = new ChecksumOutputStream(expected)) {
+            stream.write(data);
+        }
+
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+
+        final boolean[] closed = new boolean[1];
+        ByteArrayOutputStream healthy = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        IOException failure = null;
+        try (OutputStream stream = new ChecksumTeeOutputStream(healthy, failing)) {
+            stream.write(data);
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        assertThat(failure, notNullValue());
+        assertThat(failure.getMessage(), equalTo("disk full"));
+
+        assertThat(closed[0], equalTo(true));
+        assertThat(healthy.toByteArray(), equalTo(expected.toByteArray()));
+        assertThat(teeThreads(), empty());
+    }
+
+    @Test
+    public void testFailingOutputAfterQueueFills() throws NoSuchAlgorithmException {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+
+        IOException failure = null;
+        List<OutputStream> outs = Arrays.asList(new ByteArrayOutputStream(), failing);
+        try (OutputStream stream = new ChecksumTeeOutputStream(outs, 1)) {
+            for (int i = 0; i < 100; i++) {
+                stream.write(new byte[10000]);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        assertThat(failure, notNullValue());
+        assertThat(failure.getMessage(), equalTo("disk full"));
+
+        assertThat(teeThreads(), empty());
+    }
+
+    @Test
+    public void testOutputThrowingRuntimeException() throws IOException, NoSuchAlgorithmException {
+        exception.expect(IOException.class);
+
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) {
+                throw new IllegalStateException("broken output");
+            }
+        };
+
+        // more than fills the queue, which must still be drained
+        List<OutputStream> outs = Arrays.asList(new ByteArrayOutputStream(), failing);
+        try (OutputStream stream = new ChecksumTeeOutputStream(outs, 2)) {
+            stream.write(new byte[1024 * 1024]);
+        }
+    }
+
+    private static List<Thread> teeThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("checksum-tee-") && thread.isAlive())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testInvalidChecksumAlreadyPresent() throws IOException, NoSuchAlgorithmException, URISyntaxException {
+        exception.expect(InvalidChecksumException.class);
+
+        Path path = Paths.get(ChecksumTeeOutputStreamTest.class.getResource(BASE_TEST_PATH + "invalid.txt").toURI());
+        try (OutputStream stream = new ChecksumTeeOutputStream(new ByteArrayOutputStream(), new ByteArrayOutputStream())) {
+            stream.write(Files.readAllBytes(path));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.*;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Throughput regression checks for the bulk paths of the checksum streams.
+ * These run in the separate "throughputTest" Gradle task, with the minimum
+ * in MB/s taken from the "checksums.minThroughput" system property.
+ */
+public class ChecksumThroughputTest {
+
+    private final static int SIZE = 16 * 1024 * 1024;
+    private final static int RUNS = 5;
+    private final static double MIN_THROUGHPUT = Double.parseDouble(
+            System.getProperty("checksums.minThroughput", "100"));
+
+    private static byte[] content;
+    private static byte[] signed;
+
+    @BeforeClass
+    public static void createContent() throws IOException, NoSuchAlgorithmException {
+        // text-like data with the occasional comment, as in instrument results
+        Random random = new Random(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(SIZE);
+        while (bytes.size() < SIZE) {
+            if (random.nextInt(100) == 0) {
+                bytes.write("# comment\n".getBytes());
+            }
+            bytes.write(String.format("%.4f\t%.2f\n", random.nextDouble() * 1000, random.nextDouble() * 100).getBytes());
+        }
+        content = bytes.toByteArray();
+        signed = ChecksumStreamPropertyTest.sign(content);
+    }
+
+    @Test
+    public void testWriteThroughput() throws IOException, NoSuchAlgorithmException {
+        double best = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            try (OutputStream stream = new ChecksumOutputStream(new NullOutputStream())) {
+                for (int offset = 0; offset < content.length; offset += 8192) {
+                    stream.write(content, offset, Math.min(8192, content.length - offset));
+                }
+            }
+            best = Math.max(best, throughput(content.length, System.nanoTime() - start));
+        }
+
+        System.out.printf("ChecksumOutputStream: %.0f MB/s%n", best);
+        assertThat(best, greaterThanOrEqualTo(MIN_THROUGHPUT));
+    }
+
+    @Test
+    public void testReadThroughput() throws IOException, NoSuchAlgorithmException {
+        double best = 0;
+        byte[] buffer = new byte[8192];
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            try (InputStream stream = new ChecksumInputStream(new ByteArrayInputStream(signed))) {
+                while (stream.read(buffer) != -1) {
+                    // discard
+                }
+            }
+            best = Math.max(best, throughput(signed.length, System.nanoTime() - start));
+        }
+
+        System.out.printf("ChecksumInputStream: %.0f MB/s%n", best);
+        assertThat(best, greaterThanOrEqualTo(MIN_THROUGHPUT));
+    }
+
+    private static double throughput(long bytes, long nanos) {
+        return bytes / 1e6 / (nanos / 1e9);
+    }
+
+    private static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ChecksumTrailerTest {
+
+    private final static String BASE_TEST_PATH = "/com/veritomyx/checksums/ChecksumTestFiles/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testValid() throws URISyntaxException, IOException {
+        Optional<ChecksumTrailer> trailer = ChecksumTrailer.read(Paths.get(getResourceUri("valid.txt")));
+
+        assertThat(trailer.isPresent(), equalTo(true));
+        assertThat(trailer.get().getAlgorithm(), equalTo("SHA-1"));
+        assertThat(trailer.get().getHex(), equalTo("ee7b9c561d5b1cbc2c37c71c5cc846a0713603ea"));
+        assertThat(Hex.encode(trailer.get().getDigest()), equalTo("ee7b9c561d5b1cbc2c37c71c5cc846a0713603ea"));
+    }
+
+    @Test
+    public void testInvalidIsStillShown() throws URISyntaxException, IOException {
+        Optional<ChecksumTrailer> trailer = ChecksumTrailer.read(Paths.get(getResourceUri("invalid.txt")));
+
+        assertThat(trailer.get().getHex(), equalTo("Ee7b9c561d5b1cbc2c37c71c5cc846a0713603ea"));
+    }
+
+    @Test
+    public void testMissing() throws URISyntaxException, IOException {
+        for (String name : new String[] { "missing.txt", "missing2.txt", "partial.txt" }) {
+            assertThat(name, ChecksumTrailer.read(Paths.get(getResourceUri(name))).isPresent(), equalTo(false));
+        }
+    }
+
+    @Test
+    public void testShortAndMalformed() throws IOException {
+        Path empty = folder.newFile().toPath();
+        assertThat(ChecksumTrailer.read(empty).isPresent(), equalTo(false));
+
+        Path malformed = folder.newFile().toPath();
+        Files.write(malformed, "data\n# checksum:zz7b9c561d5b1cbc2c37c71c5cc846a0713603ea\n".getBytes());
+        assertThat(ChecksumTrailer.read(malformed).isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void testAgreesWithInputStream() throws Exception {
+        File file = folder.newFile();
+        try (OutputStream stream = ChecksumOutputStream.create(file.toPath())) {
+            stream.write("# header\n1234.5\t67.89\n".getBytes());
+        }
+
+        ChecksumInputStream stream = new ChecksumInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try (InputStream input = stream) {
+            while (input.read() != -1) {
+                // drain
+            }
+        }
+
+        assertThat(ChecksumTrailer.read(file.toPath()).get().getHex(), equalTo(stream.getFoundChecksum().get()));
+    }
+
+    private static URI getResourceUri(String filename) throws URISyntaxException {
+        URL resourceUrl = ChecksumTrailerTest.class.getResource(BASE_TEST_PATH + filename);
+        assertThat(resourceUrl, not(nullValue()));
+        return resourceUrl.toURI();
+    }
+}
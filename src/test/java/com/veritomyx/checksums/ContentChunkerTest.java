@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ContentChunkerTest {
+
+    @Test
+    public void testBoundariesDontDependOnWrites() throws NoSuchAlgorithmException {
+        final byte[] content = random(1, 1 << 20);
+
+        final List<String> whole = chunk(content, content.length);
+        final List<String> pieces = chunk(content, 777);
+
+        assertThat(whole.size(), greaterThan(1));
+        assertThat(pieces, equalTo(whole));
+    }
+
+    @Test
+    public void testSizes() throws IOException, NoSuchAlgorithmException {
+        final byte[] content = random(2, 1 << 20);
+        final List<Integer> lengths = new ArrayList<>();
+        long total = 0;
+        try (ContentChunker chunker = new ContentChunker((offset, length, digest) -> lengths.add(length))) {
+            chunker.write(content);
+        }
+
+        for (int i = 0; i < lengths.size(); i++) {
+            final int length = lengths.get(i);
+            assertThat(length, lessThanOrEqualTo(ContentChunker.DEFAULT_MAX_SIZE));
+            if (i < lengths.size() - 1) {
+                assertThat(length, greaterThan(ContentChunker.DEFAULT_MIN_SIZE));
+            }
+            total += length;
+        }
+        assertThat(total, equalTo((long) content.length));
+    }
+
+    @Test
+    public void testInsertionOnlyChangesNearbyChunks() throws NoSuchAlgorithmException {
+        final byte[] content = random(3, 1 << 20);
+        final byte[] shifted = new byte[content.length + 100];
+        System.arraycopy(content, 0, shifted, 100, content.length);
+
+        final List<String> original = chunk(content, 4096);
+        final Set<String> common = new HashSet<>(chunk(shifted, 4096));
+        common.retainAll(original);
+
+        assertThat(common.size(), greaterThanOrEqualTo(original.size() - 2));
+    }
+
+    @Test
+    public void testEmpty() throws NoSuchAlgorithmException {
+        assertThat(chunk(new byte[0], 1), empty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAverageNotPowerOfTwo() throws NoSuchAlgorithmException {
+        new ContentChunker(1024, 3000, 8192, (offset, length, digest) -> { });
+    }
+
+    private static List<String> chunk(byte[] content, int writeSize) throws NoSuchAlgorithmException {
+        final List<String> chunks = new ArrayList<>();
+        try (ContentChunker chunker = new ContentChunker((offset, length, digest) -> chunks.add(Hex.encode(digest)))) {
+            for (int off = 0; off < content.length; off += writeSize) {
+                chunker.write(content, off, Math.min(writeSize, content.length - off));
+            }
+        }
+        return chunks;
+    }
+
+    private static byte[] random(long seed, int size) {
+        final byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DedupIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSharedContent() throws IOException, NoSuchAlgorithmException {
+        final byte[] content = random(1, 1 << 20);
+        final byte[] copy = Arrays.copyOf(content, content.length + 5000);
+
+        try (DedupIndex index = DedupIndex.open(folder.getRoot().toPath())) {
+            record(index, "a", content);
+            record(index, "b", copy);
+
+            assertThat(index.getFileCount(), equalTo(2L));
+            assertThat(index.getLogicalBytes(), equalTo((long) content.length + copy.length));
+            assertThat(index.getUniqueBytes(), lessThan((long) copy.length + 70000));
+            assertThat(index.getUniqueBytes(), greaterThanOrEqualTo((long) copy.length));
+            assertThat(index.getReferenceCount(), greaterThan(index.getChunkCount()));
+        }
+    }
+
+    @Test
+    public void testRecordingAgainHasNoEffect() throws IOException, NoSuchAlgorithmException {
+        final byte[] content = random(2, 100000);
+
+        try (DedupIndex index = DedupIndex.open(folder.getRoot().toPath())) {
+            record(index, "a", content);
+            final long references = index.getReferenceCount();
+            record(index, "a", content);
+
+            assertThat(index.getFileCount(), equalTo(1L));
+            assertThat(index.getReferenceCount(), equalTo(references));
+            assertThat(index.getLogicalBytes(), equalTo((long) content.length));
+        }
+    }
+
+    @Test
+    public void testGrowsAndPersists() throws IOException, NoSuchAlgorithmException {
+        final Path directory = folder.getRoot().toPath();
+        final int files = 5000;
+        long chunks;
+        try (DedupIndex index = DedupIndex.open(directory)) {
+            for (int i = 0; i < files; i++) {
+                record(index, "file" + i, random(i, 3000));
+            }
+            chunks = index.getChunkCount();
+            assertThat(chunks, greaterThanOrEqualTo((long) files));
+        }
+
+        try (DedupIndex index = DedupIndex.open(directory)) {
+            assertThat(index.getFileCount(), equalTo((long) files));
+            assertThat(index.getChunkCount(), equalTo(chunks));
+
+            final long[] visited = new long[1];
+            index.forEachChunk((digest, length, count) -> {
+                assertThat(count, equalTo(1));
+                visited[0]++;
+            });
+            assertThat(visited[0], equalTo(chunks));
+        }
+    }
+
+    @Test
+    public void testChangedContentReplacesChunks() throws IOException, NoSuchAlgorithmException {
+        final byte[] shared = random(3, 200000);
+        final byte[] changed = random(4, 150000);
+
+        try (DedupIndex index = DedupIndex.open(folder.newFolder().toPath());
+             DedupIndex expected = DedupIndex.open(folder.newFolder().toPath())) {
+            record(index, "a", shared);
+            record(index, "b", shared);
+            record(index, "a", changed);
+
+            record(expected, "b", shared);
+            record(expected, "a", changed);
+
+            assertThat(index.getFileCount(), equalTo(2L));
+            assertThat(index.getChunkCount(), equalTo(expected.getChunkCount()));
+            assertThat(index.getReferenceCount(), equalTo(expected.getReferenceCount()));
+            assertThat(index.getLogicalBytes(), equalTo((long) shared.length + changed.length));
+            assertThat(index.getUniqueBytes(), equalTo(expected.getUniqueBytes()));
+
+            record(index, "b", changed);
+            index.forEachChunk((digest, length, count) -> assertThat(count, equalTo(2)));
+            assertThat(index.getUniqueBytes(), equalTo((long) changed.length));
+        }
+    }
+
+    @Test
+    public void testRepeatedBlockCountsFileOnce() throws IOException, NoSuchAlgorithmException {
+        final byte[] block = random(5, 100000);
+        final byte[] repeated = new byte[4 * block.length];
+        for (int i = 0; i < 4; i++) {
+            System.arraycopy(block, 0, repeated, i * block.length, block.length);
+        }
+
+        try (DedupIndex index = DedupIndex.open(folder.getRoot().toPath())) {
+            record(index, "a", repeated);
+            assertThat(index.getReferenceCount(), greaterThan(index.getChunkCount()));
+            index.forEachChunk((digest, length, files) -> assertThat(files, equalTo(1)));
+
+            record(index, "b", block);
+            final int[] maximum = new int[1];
+            index.forEachChunk((digest, length, files) -> maximum[0] = Math.max(maximum[0], files));
+            assertThat(maximum[0], equalTo(2));
+
+            // releasing the repeats leaves only the other file
+            record(index, "a", random(6, 1000));
+            record(index, "a", block);
+            record(index, "b", random(7, 1000));
+            index.forEachChunk((digest, length, files) -> assertThat(files, equalTo(1)));
+            assertThat(index.getLogicalBytes(), equalTo((long) block.length + 1000));
+        }
+    }
+
+    @Test
+    public void testReclaimsReplacedLists() throws IOException, NoSuchAlgorithmException {
+        final Path directory = folder.getRoot().toPath();
+        final int files = 2000;
+        try (DedupIndex index = DedupIndex.open(directory)) {
+            for (int round = 0; round < 4; round++) {
+                for (int i = 0; i < files; i++) {
+                    record(index, "file" + i, random(round * files + i, 3000));
+                }
+            }
+        }
+
+        try (DirectoryStream<Path> lists = Files.newDirectoryStream(directory, "lists-*.dat")) {
+            final List<Path> found = new ArrayList<>();
+            lists.forEach(found::add);
+            assertThat(found, hasSize(1));
+            assertThat(found.get(0).getFileName().toString(), not(equalTo("lists-0.dat")));
+        }
+
+        try (DedupIndex index = DedupIndex.open(directory)) {
+            assertThat(index.getFileCount(), equalTo((long) files));
+            assertThat(index.getLogicalBytes(), equalTo(3000L * files));
+
+            // the lists of the last round are still found, so their chunks are released
+            for (int i = 0; i < files; i++) {
+                record(index, "file" + i, new byte[0]);
+            }
+            assertThat(index.getChunkCount(), equalTo(0L));
+            assertThat(index.getReferenceCount(), equalTo(0L));
+            assertThat(index.getUniqueBytes(), equalTo(0L));
+        }
+    }
+
+    @Test
+    public void testReadOnly() throws IOException, NoSuchAlgorithmException {
+        final Path missing = folder.getRoot().toPath().resolve("missing");
+        try {
+            DedupIndex.openReadOnly(missing).close();
+            fail("there is no index");
+        } catch (NoSuchFileException e) {
+            assertThat(Files.exists(missing), equalTo(false));
+        }
+
+        final Path directory = folder.newFolder().toPath();
+        try (DedupIndex index = DedupIndex.open(directory)) {
+            record(index, "a", random(5, 100000));
+        }
+
+        try (DedupIndex index = DedupIndex.openReadOnly(directory)) {
+            assertThat(index.getFileCount(), equalTo(1L));
+            assertThat(index.getLogicalBytes(), equalTo(100000L));
+            try {
+                DedupIndex.open(directory).close();
+                fail("index is being read");
+            } catch (IOException e) {
+                assertThat(e.getMessage(), startsWith("dedup index already in use"));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLocked() throws IOException {
+        try (DedupIndex index = DedupIndex.open(folder.getRoot().toPath())) {
+            DedupIndex.open(folder.getRoot().toPath()).close();
+        }
+    }
+
+    private static void record(DedupIndex index, String name, byte[] content)
+            throws IOException, NoSuchAlgorithmException {
+        final DedupIndex.Recorder recorder = index.recorder(name);
+        try (ContentChunker chunker = new ContentChunker(recorder)) {
+            chunker.write(content);
+        }
+        recorder.commit(MessageDigest.getInstance("SHA-1").digest(content));
+    }
+
+    private static byte[] random(long seed, int size) {
+        final byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class HexTest {
+
+    @Test
+    public void testEncode() throws NoSuchAlgorithmException {
+        byte[] hash = MessageDigest.getInstance("SHA-1").digest("a".getBytes());
+        assertThat(Hex.encode(hash), equalTo("86f7e437faa5a7fce15d1ddcb9eaeaea377667b8"));
+    }
+
+    @Test
+    public void testAllBytes() {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        String text = Hex.encode(bytes);
+        assertThat(text.substring(0, 6), equalTo("000102"));
+        assertThat(text.substring(text.length() - 4), equalTo("feff"));
+        assertThat(Hex.decode(text), equalTo(bytes));
+        assertThat(Hex.decode(text.toUpperCase()), equalTo(bytes));
+    }
+
+    @Test
+    public void testEncodeAscii() throws NoSuchAlgorithmException {
+        byte[] hash = MessageDigest.getInstance("SHA-1").digest("a".getBytes());
+        byte[] ascii = new byte[44];
+        Hex.encode(hash, ascii, 2);
+
+        assertThat(new String(ascii, 2, 40, StandardCharsets.US_ASCII), equalTo("86f7e437faa5a7fce15d1ddcb9eaeaea377667b8"));
+        assertThat(ascii[0], equalTo((byte) 0));
+        assertThat(ascii[43], equalTo((byte) 0));
+    }
+
+    @Test
+    public void testMatches() throws NoSuchAlgorithmException {
+        byte[] hash = MessageDigest.getInstance("SHA-1").digest("a".getBytes());
+        byte[] ascii = "# 86f7e437faa5a7fce15d1ddcb9eaeaea377667b8".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(Hex.matches(hash, ascii, 2), equalTo(true));
+        assertThat(Hex.matches(hash, ascii, 1), equalTo(false));
+
+        ascii[2] = '9';
+        assertThat(Hex.matches(hash, ascii, 2), equalTo(false));
+
+        // only lowercase verifies, as with the checksum line written
+        ascii = "86F7E437FAA5A7FCE15D1DDCB9EAEAEA377667B8".getBytes(StandardCharsets.US_ASCII);
+        assertThat(Hex.matches(hash, ascii, 0), equalTo(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeInvalid() {
+        Hex.decode("0g");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeOdd() {
+        Hex.decode("abc");
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class IoTuningTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testProbe() throws IOException {
+        final Path large = folder.getRoot().toPath().resolve("large");
+        Files.write(large, random(8 * 1024 * 1024));
+
+        final IoTuning tuning = IoTuning.forPath(large);
+        assertThat(tuning.getBufferSize(), greaterThanOrEqualTo(16 * 1024));
+        assertThat(tuning.getParallelism(), greaterThanOrEqualTo(1));
+        assertThat(tuning.shouldMap(1024), equalTo(false));
+
+        // cached for the device
+        assertThat(IoTuning.forPath(folder.getRoot().toPath().resolve("new")), sameInstance(tuning));
+    }
+
+    @Test
+    public void testOpen() throws IOException {
+        final byte[] content = random(5 * 1024 * 1024 + 17);
+        final Path path = folder.getRoot().toPath().resolve("file");
+        Files.write(path, content);
+
+        try (InputStream in = IoTuning.open(path)) {
+            assertThat(readAll(in), equalTo(content));
+        }
+    }
+
+    @Test
+    public void testMappedSegments() throws IOException {
+        final byte[] content = random(100000);
+        final Path path = folder.getRoot().toPath().resolve("file");
+        Files.write(path, content);
+
+        try (InputStream in = new MappedInputStream(path, 4096)) {
+            assertThat(in.read(), equalTo(content[0] & 0xFF));
+            final byte[] rest = readAll(in);
+            assertThat(rest.length, equalTo(content.length - 1));
+            assertThat(rest[rest.length - 1], equalTo(content[content.length - 1]));
+            assertThat(in.read(), equalTo(-1));
+        }
+
+        Files.write(path, new byte[0]);
+        try (InputStream in = new MappedInputStream(path)) {
+            assertThat(in.read(new byte[10]), equalTo(-1));
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[10000];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, len);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] random(int size) {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+}
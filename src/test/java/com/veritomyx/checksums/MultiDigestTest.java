@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.Test;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class MultiDigestTest {
+
+    @Test
+    public void testSinglePass() throws NoSuchAlgorithmException {
+        byte[] data = "Mary had a little lamb.".getBytes();
+
+        MultiDigest digest = new MultiDigest("SHA-1", "SHA-256", "CRC32");
+        digest.update(data[0]);
+        digest.update(data, 1, data.length - 1);
+        Map<String, byte[]> digests = digest.digest();
+
+        assertThat(digests.keySet(), contains("SHA-1", "SHA-256", "CRC32"));
+        assertThat(Hex.encode(digests.get("SHA-1")), equalTo("4e07b8c7aaf2a4ed4ce39e76f65d2a04bdef5700"));
+        assertThat(digests.get("SHA-256"), equalTo(MessageDigest.getInstance("SHA-256").digest(data)));
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        assertThat(Long.parseLong(Hex.encode(digests.get("CRC32")), 16), equalTo(crc.getValue()));
+    }
+
+    @Test
+    public void testParallel() throws NoSuchAlgorithmException {
+        byte[] data = new byte[1 << 20];
+        new Random(1).nextBytes(data);
+
+        MultiDigest sequential = new MultiDigest(Arrays.asList("SHA-1", "SHA-256", "MD5"), false);
+        MultiDigest parallel = new MultiDigest(Arrays.asList("SHA-1", "SHA-256", "MD5"), true);
+        sequential.update(data, 0, data.length);
+        parallel.update(data, 0, data.length);
+
+        Map<String, byte[]> expected = sequential.digest();
+        Map<String, byte[]> actual = parallel.digest();
+        for (String algorithm : expected.keySet()) {
+            assertThat(actual.get(algorithm), equalTo(expected.get(algorithm)));
+        }
+    }
+
+    @Test(expected = NoSuchAlgorithmException.class)
+    public void testUnknownAlgorithm() throws NoSuchAlgorithmException {
+        new MultiDigest("SHA-1", "NOPE-512");
+    }
+}
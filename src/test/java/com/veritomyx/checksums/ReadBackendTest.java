@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ReadBackendTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testChannel() throws Exception {
+        try (ReadBackend backend = new ChannelReadBackend(4)) {
+            testBackend(backend);
+        }
+    }
+
+    @Test
+    public void testAsyncChannel() throws Exception {
+        try (ReadBackend backend = new AsyncChannelReadBackend(4)) {
+            testBackend(backend);
+        }
+    }
+
+    private void testBackend(ReadBackend backend) throws Exception {
+        final Random random = new Random(1);
+        final List<byte[]> contents = new ArrayList<>();
+        final List<CompletableFuture<Optional<ByteBuffer>>> reads = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final byte[] content = new byte[random.nextInt(3) == 0 ? 0 : random.nextInt(100000)];
+            random.nextBytes(content);
+            final Path path = folder.getRoot().toPath().resolve(backend.getClass().getSimpleName() + i);
+            Files.write(path, content);
+
+            contents.add(content);
+            reads.add(backend.read(path, 65536));
+        }
+
+        for (int i = 0; i < contents.size(); i++) {
+            final Optional<ByteBuffer> read = reads.get(i).get();
+            if (contents.get(i).length > 65536) {
+                assertThat(read.isPresent(), equalTo(false));
+                continue;
+            }
+
+            final byte[] bytes = new byte[read.get().remaining()];
+            read.get().get(bytes);
+            assertThat(bytes, equalTo(contents.get(i)));
+        }
+
+        try {
+            backend.read(folder.getRoot().toPath().resolve("missing"), 65536).get();
+            fail("missing file was read");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause() instanceof IOException ? e.getCause() : e.getCause().getCause();
+            assertThat(cause, instanceOf(NoSuchFileException.class));
+        }
+    }
+}
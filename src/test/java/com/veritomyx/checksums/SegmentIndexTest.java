@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SegmentIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws NoSuchAlgorithmException, IOException {
+        final Path path = write("first\n", "", "third\nand more\n");
+
+        final Optional<SegmentIndex> index = SegmentIndex.read(path);
+        assertThat(index.isPresent(), equalTo(true));
+
+        final List<SegmentIndex.Segment> segments = index.get().getSegments();
+        assertThat(segments.size(), equalTo(3));
+        assertThat(segments.get(1).getOffset(), equalTo(6L));
+        assertThat(segments.get(1).getLength(), equalTo(0L));
+        assertThat(segments.get(2).getOffset(), equalTo(6L));
+        assertThat(segments.get(2).getLength(), equalTo(15L));
+        assertThat(segments.get(0).getDigest(), equalTo(sha1("first\n")));
+
+        assertThat(index.get().verify(path, 2), empty());
+    }
+
+    @Test
+    public void testEmpty() throws NoSuchAlgorithmException, IOException {
+        final Path path = write();
+
+        assertThat(SegmentIndex.read(path).get().getSegments(), empty());
+    }
+
+    @Test
+    public void testCorruptSegment() throws NoSuchAlgorithmException, IOException {
+        final Path path = write("first\n", "second\n", "third\n");
+        final byte[] bytes = Files.readAllBytes(path);
+        bytes[8] = 'X';
+        Files.write(path, bytes);
+
+        final SegmentIndex index = SegmentIndex.read(path).get();
+        assertThat(index.verify(path, 3), equalTo(Collections.singletonList(1)));
+    }
+
+    @Test
+    public void testCorruptIndex() throws NoSuchAlgorithmException, IOException {
+        final Path path = write("first\n", "second\n");
+        final String text = new String(Files.readAllBytes(path), StandardCharsets.US_ASCII);
+        Files.write(path, text.replace("# segment:6:7:", "# segment:6:6:").getBytes(StandardCharsets.US_ASCII));
+
+        try {
+            SegmentIndex.read(path);
+            fail("index doesn't match its digest");
+        } catch (InvalidChecksumException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIndexTooLongForItsCount() throws NoSuchAlgorithmException, IOException {
+        final Path path = folder.newFile().toPath();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[1024 * 1024]);
+        out.write("\n# segments:1:0:da39a3ee5e6b4b0d3255bfef95601890afd80709\n".getBytes(StandardCharsets.US_ASCII));
+        Files.write(path, out.toByteArray());
+
+        try {
+            SegmentIndex.read(path);
+            fail("a megabyte can't hold the line of one segment");
+        } catch (InvalidChecksumException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNotIndexed() throws NoSuchAlgorithmException, IOException {
+        final Path checksum = folder.newFile().toPath();
+        Files.write(checksum, "Hello\n# checksum:1d229271928d3f9e2bb0375bd6ce5db6c6d348d9\n"
+                .getBytes(StandardCharsets.US_ASCII));
+        final Path empty = folder.newFile().toPath();
+        final Path partial = folder.newFile().toPath();
+        Files.write(partial, "# segments:0:0:da39a3ee5e6b4b0d3255bfef95601890afd80709"
+                .getBytes(StandardCharsets.US_ASCII));
+
+        for (Path path : Arrays.asList(checksum, empty, partial)) {
+            assertThat(SegmentIndex.read(path).isPresent(), equalTo(false));
+        }
+    }
+
+    @Test
+    public void testMayEndWithIndex() throws NoSuchAlgorithmException, IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("Hello".getBytes(StandardCharsets.US_ASCII));
+        SegmentIndex.write(out, Collections.singletonList(new SegmentIndex.Segment(0, 5, sha1("Hello"))));
+
+        final ByteBuffer indexed = ByteBuffer.wrap(out.toByteArray());
+        assertThat(SegmentIndex.mayEndWithIndex(indexed), equalTo(true));
+        assertThat(indexed.remaining(), equalTo(out.size()));
+
+        final ByteBuffer checksum = ByteBuffer.wrap(
+                "Hello\n# checksum:1d229271928d3f9e2bb0375bd6ce5db6c6d348d9\n".getBytes(StandardCharsets.US_ASCII));
+        assertThat(SegmentIndex.mayEndWithIndex(checksum), equalTo(false));
+        assertThat(SegmentIndex.mayEndWithIndex(ByteBuffer.allocate(0)), equalTo(false));
+    }
+
+    @Test(expected = IOException.class)
+    public void testSegmentsMustFollow() throws NoSuchAlgorithmException, IOException {
+        SegmentIndex.write(new ByteArrayOutputStream(), Collections.singletonList(
+                new SegmentIndex.Segment(1, 0, sha1(""))));
+    }
+
+    private Path write(String... contents) throws NoSuchAlgorithmException, IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final List<SegmentIndex.Segment> segments = new ArrayList<>();
+        for (String content : contents) {
+            segments.add(new SegmentIndex.Segment(out.size(), content.length(), sha1(content)));
+            out.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+        SegmentIndex.write(out, segments);
+
+        final Path path = folder.newFile().toPath();
+        Files.write(path, out.toByteArray());
+        return path;
+    }
+
+    private static byte[] sha1(String content) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-1").digest(content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TokenBucketTest {
+
+    private final static long SECOND = 1_000_000_000L;
+
+    @Test
+    public void testBurstThenRate() {
+        final AtomicLong now = new AtomicLong();
+        final TokenBucket bucket = new TokenBucket(100, 50, now::get);
+
+        assertThat(bucket.reserve(50), equalTo(0L));
+        assertThat(bucket.reserve(10), equalTo(SECOND / 10));
+
+        now.addAndGet(SECOND / 10);
+        assertThat(bucket.reserve(10), equalTo(SECOND / 10));
+    }
+
+    @Test
+    public void testDebtIsWaitedOut() {
+        final AtomicLong now = new AtomicLong();
+        final TokenBucket bucket = new TokenBucket(1000, 1000, now::get);
+
+        // more than the capacity is allowed, but the next taker waits for it
+        assertThat(bucket.reserve(3000), equalTo(2 * SECOND));
+        now.addAndGet(2 * SECOND);
+        assertThat(bucket.reserve(1), equalTo(SECOND / 1000));
+    }
+
+    @Test
+    public void testCapacityLimitsSavings() {
+        final AtomicLong now = new AtomicLong();
+        final TokenBucket bucket = new TokenBucket(10, 20, now::get);
+
+        now.addAndGet(100 * SECOND);
+        assertThat(bucket.reserve(20), equalTo(0L));
+        assertThat(bucket.reserve(1), greaterThan(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRate() {
+        new TokenBucket(0, 10);
+    }
+}
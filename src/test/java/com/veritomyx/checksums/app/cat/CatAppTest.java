@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.cat;
+
+import com.veritomyx.checksums.ChecksumOutputStream;
+import com.veritomyx.checksums.app.AppContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class CatAppTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private AppContext context;
+
+    @Before
+    public void setUp() {
+        context = new AppContext(new ByteArrayInputStream(new byte[0]), new PrintStream(out, true),
+                new PrintStream(err, true), folder.getRoot().toPath());
+    }
+
+    @Test
+    public void testPrefetchKeepsOrder() throws IOException, NoSuchAlgorithmException {
+        final List<String> files = new ArrayList<>();
+        final ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        // sizes either side of the prefetch limit, so some files are finished when their turn comes
+        final int[] sizes = { 100, CatApp.PREFETCH_LIMIT + 5000, 0, 3000, 2 * CatApp.PREFETCH_LIMIT, 1, 70000, 10 };
+        for (int i = 0; i < sizes.length; i++) {
+            final byte[] content = random(i, sizes[i]);
+            files.add(sign("file" + i, content));
+            contents.write(content);
+        }
+
+        assertThat(CatApp.run(files, 4, context), equalTo(0));
+        assertThat(out.toByteArray(), equalTo(signed(contents.toByteArray())));
+    }
+
+    @Test
+    public void testPrefetchStopsAtInvalidFile() throws IOException, NoSuchAlgorithmException {
+        final String invalid = "invalid";
+        final byte[] corrupted = signed(random(1, 5000));
+        corrupted[10] ^= 1;
+        Files.write(folder.getRoot().toPath().resolve(invalid), corrupted);
+
+        final List<String> files = Arrays.asList(sign("a", random(2, 5000)), sign("b", random(3, 200)), invalid,
+                sign("c", random(4, 5000)), sign("d", random(5, 5000)));
+
+        assertThat(CatApp.run(files, 4, context), equalTo(1));
+        assertThat(out.size(), equalTo(0));
+        assertThat(err.toString("UTF-8"), equalTo("Invalid checksum: '" + invalid + "'" + System.lineSeparator()));
+    }
+
+    private String sign(String name, byte[] content) throws IOException, NoSuchAlgorithmException {
+        final Path path = folder.getRoot().toPath().resolve(name);
+        Files.write(path, signed(content));
+        return name;
+    }
+
+    private static byte[] signed(byte[] content) throws IOException, NoSuchAlgorithmException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream stream = new ChecksumOutputStream(bytes)) {
+            stream.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] random(long seed, int size) {
+        final byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.serve;
+
+import com.veritomyx.checksums.ChecksumOutputStream;
+import com.veritomyx.checksums.app.AppContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ServeAppTest {
+
+    private final static String TOKEN = "0123456789abcdef";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String home;
+    private ServerSocket server;
+    private Thread acceptor;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private AppContext context;
+
+    @Before
+    public void setUp() throws IOException, NoSuchAlgorithmException {
+        home = System.getProperty("user.home");
+        System.setProperty("user.home", folder.newFolder("home").toString());
+
+        final Path work = folder.newFolder("work").toPath();
+        try (OutputStream stream = new ChecksumOutputStream(Files.newOutputStream(work.resolve("a.txt")))) {
+            stream.write("Hello\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        context = new AppContext(new ByteArrayInputStream(new byte[0]), new PrintStream(out, true),
+                new PrintStream(err, true), work);
+
+        server = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    final Socket socket = server.accept();
+                    connections.incrementAndGet();
+                    ServeApp.handle(socket, TOKEN.getBytes(StandardCharsets.US_ASCII), null, null);
+                }
+            } catch (IOException e) {
+                // closed by the test
+            }
+        });
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        server.close();
+        acceptor.join();
+        System.setProperty("user.home", home);
+    }
+
+    @Test
+    public void testServed() throws IOException, NoSuchAlgorithmException {
+        ServeProtocol.writeToken(ServeProtocol.tokenFile(server.getLocalPort()), TOKEN);
+
+        assertThat(ClientApp.run(server.getLocalPort(), new String[] { "verify", "a.txt" }, context), equalTo(0));
+        assertThat(out.toString("UTF-8"), equalTo("a.txt: OK\n"));
+        assertThat(connections.get(), equalTo(1));
+    }
+
+    @Test
+    public void testWrongTokenRefused() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream request = new DataOutputStream(socket.getOutputStream())) {
+
+            ServeProtocol.writeRequest(request, "wrong", context.getWorkingDirectory().toString(),
+                    new String[] { "verify", "a.txt" });
+            assertThat(ServeProtocol.readAccepted(in), equalTo(false));
+        }
+    }
+
+    @Test
+    public void testWrongTokenRunsLocally() throws IOException, NoSuchAlgorithmException {
+        ServeProtocol.writeToken(ServeProtocol.tokenFile(server.getLocalPort()), "stale");
+
+        assertThat(ClientApp.run(server.getLocalPort(), new String[] { "verify", "a.txt" }, context), equalTo(0));
+        assertThat(out.toString("UTF-8"), equalTo("a.txt: OK\n"));
+        assertThat(connections.get(), equalTo(1));
+    }
+
+    @Test
+    public void testNoServerRunsLocally() throws IOException, NoSuchAlgorithmException {
+        assertThat(ClientApp.run(server.getLocalPort(), new String[] { "verify", "a.txt" }, context), equalTo(0));
+        assertThat(out.toString("UTF-8"), equalTo("a.txt: OK\n"));
+        assertThat(connections.get(), equalTo(0));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.serve;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ServeProtocolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRequest() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ServeProtocol.writeRequest(new DataOutputStream(bytes), "token", "/work", new String[] { "verify", "-" });
+        ServeProtocol.writeAccepted(new DataOutputStream(bytes));
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(in.readUTF(), equalTo("token"));
+        assertThat(in.readUTF(), equalTo("/work"));
+        assertThat(ServeProtocol.readArguments(in), equalTo(new String[] { "verify", "-" }));
+        assertThat(ServeProtocol.readAccepted(in), equalTo(true));
+        assertThat(ServeProtocol.readAccepted(in), equalTo(false));
+    }
+
+    @Test
+    public void testChunks() throws IOException {
+        final byte[] data = new byte[20000];
+        new Random(1).nextBytes(data);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        ServeProtocol.writeChunks(new ByteArrayInputStream(data), out);
+        out.writeInt(42);
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        final InputStream chunked = new ServeProtocol.ChunkedInputStream(in);
+        assertThat(readAll(chunked), equalTo(data));
+        assertThat(chunked.read(), equalTo(-1));
+
+        // the empty chunk ends the stream without reading past it
+        assertThat(in.readInt(), equalTo(42));
+    }
+
+    @Test
+    public void testFrames() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        final OutputStream stdout = new ServeProtocol.FrameOutputStream(out, ServeProtocol.STDOUT);
+        final OutputStream stderr = new ServeProtocol.FrameOutputStream(out, ServeProtocol.STDERR);
+        stdout.write("first\n".getBytes(StandardCharsets.US_ASCII));
+        stderr.write("warning\n".getBytes(StandardCharsets.US_ASCII));
+        stdout.write('x');
+        stdout.write(new byte[0]);
+        ServeProtocol.writeExit(out, 3);
+
+        final ByteArrayOutputStream receivedOut = new ByteArrayOutputStream();
+        final ByteArrayOutputStream receivedErr = new ByteArrayOutputStream();
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(ServeProtocol.readResponse(in, receivedOut, receivedErr), equalTo(3));
+        assertThat(receivedOut.toString("US-ASCII"), equalTo("first\nx"));
+        assertThat(receivedErr.toString("US-ASCII"), equalTo("warning\n"));
+        assertThat(in.read(), equalTo(-1));
+    }
+
+    @Test
+    public void testToken() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("home").resolve("serve.token");
+        ServeProtocol.writeToken(file, "first");
+        ServeProtocol.writeToken(file, "second");
+
+        assertThat(ServeProtocol.readToken(file), equalTo("second"));
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file)), equalTo("rw-------"));
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file.getParent())),
+                    equalTo("rwx------"));
+        }
+        try (Stream<Path> files = Files.list(file.getParent())) {
+            assertThat(files.count(), equalTo(1L));
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[3000];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, len);
+        }
+        return bytes.toByteArray();
+    }
+}
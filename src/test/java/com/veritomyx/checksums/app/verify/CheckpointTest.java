@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.verify;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class CheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecordsSurviveReopening() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("checkpoint");
+        final byte[] digest = new byte[20];
+        digest[19] = 1;
+        try (Checkpoint checkpoint = Checkpoint.open(path)) {
+            checkpoint.record(new VerifyApp.Outcome("a.txt", VerifyApp.Result.OK,
+                    Collections.singletonMap("SHA-1", digest)));
+            checkpoint.record(new VerifyApp.Outcome("b.txt", VerifyApp.Result.ERROR, Collections.emptyMap()));
+        }
+
+        try (Checkpoint checkpoint = Checkpoint.open(path)) {
+            final VerifyApp.Outcome a = checkpoint.get("a.txt").get();
+            assertThat(a.result, equalTo(VerifyApp.Result.OK));
+            assertThat(a.digests.get("SHA-1"), equalTo(digest));
+            assertThat(checkpoint.get("b.txt").get().result, equalTo(VerifyApp.Result.ERROR));
+            assertThat(checkpoint.get("c.txt").isPresent(), equalTo(false));
+        }
+    }
+
+    @Test
+    public void testDropsPartialLastLine() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("checkpoint");
+        Files.write(path, "a.txt\tOK\nb.txt\tINVA".getBytes(StandardCharsets.UTF_8));
+
+        final Map<String, VerifyApp.Outcome> loaded = new HashMap<>();
+        assertThat(Checkpoint.load(path, loaded), equalTo((long) "a.txt\tOK\n".length()));
+        assertThat(loaded.keySet(), contains("a.txt"));
+
+        try (Checkpoint checkpoint = Checkpoint.open(path)) {
+            assertThat(checkpoint.get("b.txt").isPresent(), equalTo(false));
+            checkpoint.record(new VerifyApp.Outcome("b.txt", VerifyApp.Result.INVALID, Collections.emptyMap()));
+        }
+
+        assertThat(new String(Files.readAllBytes(path), StandardCharsets.UTF_8),
+                equalTo("a.txt\tOK\nb.txt\tINVALID\n"));
+    }
+
+    @Test
+    public void testLaterRecordWins() throws IOException {
+        final Path path = folder.getRoot().toPath().resolve("checkpoint");
+        Files.write(path, "a.txt\tERROR\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(path, "a.txt\tOK\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (Checkpoint checkpoint = Checkpoint.open(path)) {
+            assertThat(checkpoint.get("a.txt").get().result, equalTo(VerifyApp.Result.OK));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.verify;
+
+import com.beust.jcommander.ParameterException;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ShardTest {
+
+    @Test
+    public void testStableAssignment() {
+        // CRC32 of the name as listed, so processes and releases agree on the split
+        assertThat(shardOf("a.txt", 4), equalTo(2));
+        assertThat(shardOf("h.txt", 4), equalTo(3));
+        assertThat(shardOf("data/c.dat", 4), equalTo(0));
+        assertThat(shardOf("e.txt", 3), equalTo(2));
+        assertThat(shardOf("g.txt", 3), equalTo(1));
+    }
+
+    @Test
+    public void testEachFileInOneShard() {
+        for (int i = 0; i < 1000; i++) {
+            final String file = "dir/file" + i;
+            int shards = 0;
+            for (int index = 0; index < 7; index++) {
+                if (new Shard(index, 7).contains(file)) {
+                    shards++;
+                }
+            }
+            assertThat(file, shards, equalTo(1));
+        }
+    }
+
+    @Test
+    public void testConverter() {
+        final Shard shard = new Shard.Converter().convert("2/5");
+        assertThat(shard.getIndex(), equalTo(2));
+        assertThat(shard.getCount(), equalTo(5));
+        assertThat(shard.toString(), equalTo("2/5"));
+    }
+
+    @Test(expected = ParameterException.class)
+    public void testIndexOutOfRange() {
+        new Shard.Converter().convert("5/5");
+    }
+
+    @Test(expected = ParameterException.class)
+    public void testNotAShard() {
+        new Shard.Converter().convert("3");
+    }
+
+    private static int shardOf(String file, int count) {
+        for (int index = 0; index < count; index++) {
+            if (new Shard(index, count).contains(file)) {
+                return index;
+            }
+        }
+        throw new AssertionError("in no shard: " + file);
+    }
+}
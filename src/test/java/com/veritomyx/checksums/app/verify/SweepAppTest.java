@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.verify;
+
+import com.beust.jcommander.JCommander;
+import com.veritomyx.checksums.ChecksumOutputStream;
+import com.veritomyx.checksums.app.AppContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SweepAppTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private Path work;
+    private AppContext context;
+
+    @Before
+    public void setUp() throws IOException, NoSuchAlgorithmException {
+        work = folder.getRoot().toPath();
+        for (String name : new String[] { "a.txt", "b.txt", "h.txt" }) {
+            try (OutputStream stream = new ChecksumOutputStream(Files.newOutputStream(work.resolve(name)))) {
+                stream.write(("content of " + name + "\n").getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        context = new AppContext(new ByteArrayInputStream(new byte[0]), new PrintStream(out, true),
+                new PrintStream(new ByteArrayOutputStream(), true), work);
+    }
+
+    @Test
+    public void testResumeSkipsCheckpointedFiles() throws IOException {
+        assertThat(sweep("--state", "state", "--workers", "2", "a.txt", "b.txt", "h.txt"), equalTo(0));
+        assertThat(out.toString("UTF-8"), equalTo("a.txt: OK\nb.txt: OK\nh.txt: OK\n"));
+
+        // a file verified again would now be invalid
+        final byte[] content = Files.readAllBytes(work.resolve("a.txt"));
+        content[0] ^= 1;
+        Files.write(work.resolve("a.txt"), content);
+
+        out.reset();
+        assertThat(sweep("--state", "state", "--workers", "2", "a.txt", "b.txt", "h.txt"), equalTo(0));
+        assertThat(out.toString("UTF-8"), equalTo("a.txt: OK\nb.txt: OK\nh.txt: OK\n"));
+    }
+
+    @Test
+    public void testResumeWithOtherFilesRefused() throws IOException {
+        assertThat(sweep("--state", "state", "--workers", "2", "a.txt", "b.txt"), equalTo(0));
+        final byte[] list = Files.readAllBytes(work.resolve("state").resolve("files.txt"));
+
+        try {
+            sweep("--state", "state", "--workers", "2", "a.txt", "h.txt");
+            fail("the sweep of other files was replaced");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), containsString("other files"));
+        }
+        assertThat(Files.readAllBytes(work.resolve("state").resolve("files.txt")), equalTo(list));
+    }
+
+    private int sweep(String... args) throws IOException {
+        final SweepSettings settings = new SweepSettings();
+        JCommander.newBuilder().addObject(settings).build().parse(args);
+        return SweepApp.run(settings, context);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2018 Veritomyx, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ *  Neither the name of PeakInvestigator-Java-SDK nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package com.veritomyx.checksums.app.watch;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+import com.veritomyx.checksums.ChecksumOutputStream;
+import com.veritomyx.checksums.app.AppContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class WatchAppTest {
+
+    private final static int QUIET_PERIOD = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private Path directory;
+    private Thread watcher;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("incoming").toPath();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher.join();
+        }
+    }
+
+    @Test
+    public void testSign() throws Exception {
+        watch("--mode", "SIGN", "--quiet-period", Integer.toString(QUIET_PERIOD), "incoming");
+
+        final byte[] unsigned = "Hello\n".getBytes(StandardCharsets.US_ASCII);
+        Files.write(directory.resolve("new.txt"), unsigned);
+        Files.write(directory.resolve("signed.txt"), signed("Signed\n"));
+        final byte[] appended = concat(signed("Logged\n"), "more\n".getBytes(StandardCharsets.US_ASCII));
+        Files.write(directory.resolve("appended.txt"), appended);
+        final byte[] invalid = signed("Broken\n");
+        invalid[0] ^= 1;
+        Files.write(directory.resolve("invalid.txt"), invalid);
+
+        awaitLine("new.txt: SIGNED");
+        awaitLine("signed.txt: OK");
+        awaitLine("appended.txt: APPENDED");
+        awaitLine("invalid.txt: INVALID");
+
+        assertThat(Files.readAllBytes(directory.resolve("new.txt")), equalTo(signed("Hello\n")));
+        assertThat(Files.readAllBytes(directory.resolve("appended.txt")), equalTo(appended));
+        assertThat(Files.readAllBytes(directory.resolve("invalid.txt")), equalTo(invalid));
+
+        // the events of replacing a file when signing it are its own, and ignored
+        Thread.sleep(5 * QUIET_PERIOD);
+        assertThat(lines().stream().filter(line -> line.contains("new.txt")).count(), equalTo(1L));
+    }
+
+    @Test
+    public void testSignedFileAppendedTo() throws Exception {
+        watch("--mode", "SIGN", "--quiet-period", Integer.toString(QUIET_PERIOD), "incoming");
+
+        final Path file = directory.resolve("log.txt");
+        Files.write(file, "first\n".getBytes(StandardCharsets.US_ASCII));
+        awaitLine("log.txt: SIGNED");
+
+        // a producer reopening the file after it was signed
+        final byte[] appended = concat(Files.readAllBytes(file), "second\n".getBytes(StandardCharsets.US_ASCII));
+        Files.write(file, appended);
+        awaitLine("log.txt: APPENDED");
+        assertThat(Files.readAllBytes(file), equalTo(appended));
+    }
+
+    @Test
+    public void testVerify() throws Exception {
+        watch("--quiet-period", Integer.toString(QUIET_PERIOD), "incoming");
+
+        Files.write(directory.resolve("signed.txt"), signed("Signed\n"));
+        Files.write(directory.resolve("unsigned.txt"), "Hello\n".getBytes(StandardCharsets.US_ASCII));
+
+        awaitLine("signed.txt: OK");
+        awaitLine("unsigned.txt: MISSING");
+        assertThat(Files.readAllBytes(directory.resolve("unsigned.txt")),
+                equalTo("Hello\n".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void testCountsAtLeastOne() {
+        for (String option : Arrays.asList("--threads", "--queue")) {
+            for (String value : Arrays.asList("0", "-1")) {
+                try {
+                    JCommander.newBuilder().addObject(new WatchSettings()).build().parse(option, value, "dir");
+                    fail(option + " " + value + " was accepted");
+                } catch (ParameterException e) {
+                    assertThat(e.getMessage(), containsString(option));
+                }
+            }
+        }
+    }
+
+    private void watch(String... args) throws InterruptedException {
+        final WatchSettings settings = new WatchSettings();
+        JCommander.newBuilder().addObject(settings).build().parse(args);
+        final AppContext context = new AppContext(new ByteArrayInputStream(new byte[0]), new PrintStream(out, true),
+                new PrintStream(new ByteArrayOutputStream(), true), folder.getRoot().toPath());
+
+        watcher = new Thread(() -> {
+            try {
+                WatchApp.run(settings, context);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        watcher.start();
+        // files written before the directory is registered would go unnoticed
+        Thread.sleep(500);
+    }
+
+    private void awaitLine(String suffix) throws InterruptedException, UnsupportedEncodingException {
+        final long deadline = System.nanoTime() + 10_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            if (lines().stream().anyMatch(line -> line.endsWith(suffix))) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("no line ending with '" + suffix + "' in: " + lines());
+    }
+
+    private List<String> lines() throws UnsupportedEncodingException {
+        return Arrays.asList(out.toString("UTF-8").split("\n"));
+    }
+
+    private static byte[] signed(String content) throws IOException, NoSuchAlgorithmException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream stream = new ChecksumOutputStream(bytes)) {
+            stream.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        final byte[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        return both;
+    }
+}